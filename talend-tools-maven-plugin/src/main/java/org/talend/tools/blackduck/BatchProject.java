@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+/**
+ * A blackduck project version validated by the {@code validate-batch} goal.
+ */
+public class BatchProject {
+
+    /**
+     * The blackduck project name.
+     */
+    private String name;
+
+    /**
+     * The project version.
+     */
+    private String version;
+
+    public BatchProject() {
+        // no-op
+    }
+
+    BatchProject(final String name, final String version) {
+        this.name = name;
+        this.version = version;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(final String name) {
+        this.name = name;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(final String version) {
+        this.version = version;
+    }
+
+    @Override
+    public String toString() {
+        return name + ' ' + version;
+    }
+}
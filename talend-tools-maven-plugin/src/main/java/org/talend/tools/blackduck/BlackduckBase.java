@@ -17,6 +17,9 @@ package org.talend.tools.blackduck;
 
 import static java.util.Optional.ofNullable;
 
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -31,6 +34,12 @@ import org.apache.maven.project.MavenProject;
 import org.apache.maven.settings.Server;
 import org.apache.maven.settings.crypto.DefaultSettingsDecryptionRequest;
 import org.apache.maven.settings.crypto.SettingsDecrypter;
+import org.slf4j.LoggerFactory;
+
+import com.blackducksoftware.integration.exception.IntegrationException;
+import com.blackducksoftware.integration.hub.proxy.ProxyInfoBuilder;
+import com.blackducksoftware.integration.hub.rest.CredentialsRestConnection;
+import com.blackducksoftware.integration.log.Slf4jIntLogger;
 
 public abstract class BlackduckBase extends AbstractMojo {
 
@@ -64,6 +73,19 @@ public abstract class BlackduckBase extends AbstractMojo {
     @Parameter(property = "hub-detect.atTheEnd", defaultValue = "true")
     protected boolean atTheEnd;
 
+    /**
+     * The user level cache location. Binaries are stored by version and sha256 and linked into the build directory,
+     * the resolved "latest" versions and the report results are cached there too.
+     */
+    @Parameter(property = "hub-detect.sharedCacheDirectory", defaultValue = "${user.home}/.m2/talend-tools")
+    protected File sharedCacheDirectory;
+
+    /**
+     * Should the authenticated blackduck connections be shared by all the executions of the build.
+     */
+    @Parameter(property = "hub-detect.reuseConnections", defaultValue = "true")
+    protected boolean reuseConnections;
+
     @Parameter(defaultValue = "${session}", readonly = true)
     protected MavenSession session;
 
@@ -75,14 +97,38 @@ public abstract class BlackduckBase extends AbstractMojo {
 
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
-        final AtomicInteger counter = AtomicInteger.class.cast(
-                session.getRequest().getData().computeIfAbsent(getClass().getName() + ".counter", k -> new AtomicInteger()));
-        if (atTheEnd && !skip && counter.incrementAndGet() != reactorProjects.size()) {
-            getLog().debug(
-                    String.format("Not yet at the last project, will only run when reached to not do it multiple times %d/%d",
-                            counter.get(), reactorProjects.size()));
-            return;
+        if (atTheEnd && !skip) {
+            final ReactorCompletion completion = ReactorCompletion.of(session);
+            if (completion.isActive()) {
+                completion.tracker(getClass().getName(), reactorProjects, getLog()).arrive(session.getCurrentProject(),
+                        this::executeDeferred);
+                return;
+            }
+            final AtomicInteger counter = AtomicInteger.class.cast(session.getRequest().getData().computeIfAbsent(
+                    getClass().getName() + ".counter", k -> new AtomicInteger()));
+            if (counter.incrementAndGet() != reactorProjects.size()) {
+                getLog().debug(String.format(
+                        "Not yet at the last project, will only run when reached to not do it multiple times %d/%d",
+                        counter.get(), reactorProjects.size()));
+                return;
+            }
+        }
+        doExecuteIfConfigured();
+    }
+
+    // can run in the thread of another module (the last one to complete) so ensure the plugin is the context loader
+    private void executeDeferred() throws MojoExecutionException, MojoFailureException {
+        final Thread thread = Thread.currentThread();
+        final ClassLoader contextLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(getClass().getClassLoader());
+        try {
+            doExecuteIfConfigured();
+        } finally {
+            thread.setContextClassLoader(contextLoader);
         }
+    }
+
+    private void doExecuteIfConfigured() throws MojoExecutionException, MojoFailureException {
         if (skip) {
             getLog().info("Execution is skipped");
             return;
@@ -103,22 +149,61 @@ public abstract class BlackduckBase extends AbstractMojo {
             return;
         }
 
-        final Optional<Server> serverOpt = session.getSettings().getServers().stream().filter(s -> serverId.equals(s.getId()))
-                .findFirst();
+        final Optional<Server> serverOpt =
+                session.getSettings().getServers().stream().filter(s -> serverId.equals(s.getId())).findFirst();
         if (!serverOpt.isPresent()) {
             getLog().warn(String.format("No server '%s', skipping blackduck execution", serverId));
             return;
         }
 
         final Server tmpServer = serverOpt.get();
-        final Server server = ofNullable(settingsDecrypter.decrypt(new DefaultSettingsDecryptionRequest(tmpServer)).getServer())
-                .orElse(tmpServer);
+        final Server server =
+                ofNullable(settingsDecrypter.decrypt(new DefaultSettingsDecryptionRequest(tmpServer)).getServer())
+                        .orElse(tmpServer);
         if ("skip".equals(server.getPassword())) {
             getLog().warn(String.format("server '%s' was configured to be skipped", serverId));
             return;
         }
 
-        doExecute(rootProject, server);
+        final BuildMetrics.Timer timer = metrics().time("mojo." + getClass().getSimpleName());
+        try {
+            doExecute(rootProject, server);
+        } finally {
+            timer.stop();
+            writeMetrics(rootProject);
+        }
+    }
+
+    BuildMetrics metrics() {
+        return BuildMetrics.of(session);
+    }
+
+    void writeMetrics(final MavenProject rootProject) {
+        metrics().write(new File(rootProject.getBuild().getDirectory(), "blackduck/metrics").toPath(), getLog());
+    }
+
+    protected CredentialsRestConnection createRestConnection(final Server credentials,
+            final boolean alwaysTrustServerCertificate) throws MojoExecutionException {
+        if (reuseConnections) {
+            return RestConnectionPool.of(session).get(blackduckUrl, credentials.getUsername(),
+                    credentials.getPassword(), alwaysTrustServerCertificate,
+                    () -> newRestConnection(credentials, alwaysTrustServerCertificate));
+        }
+        return newRestConnection(credentials, alwaysTrustServerCertificate);
+    }
+
+    private CredentialsRestConnection newRestConnection(final Server credentials,
+            final boolean alwaysTrustServerCertificate) throws MojoExecutionException {
+        try {
+            final SharedRestConnection connection = new SharedRestConnection(
+                    new Slf4jIntLogger(LoggerFactory.getLogger("client")), new URL(blackduckUrl),
+                    credentials.getUsername(), credentials.getPassword(), 60, new ProxyInfoBuilder().buildObject());
+            connection.alwaysTrustServerCertificate = alwaysTrustServerCertificate;
+            connection.connect(); // before being shared, see SharedRestConnection
+            return connection;
+        } catch (final MalformedURLException | IntegrationException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
     }
 
     protected abstract void doExecute(MavenProject rootProject, Server server)
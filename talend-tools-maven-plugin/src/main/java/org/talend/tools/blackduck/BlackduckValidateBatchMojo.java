@@ -0,0 +1,169 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import static java.util.Collections.singletonList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.settings.Server;
+
+import com.blackducksoftware.integration.hub.model.view.ProjectVersionView;
+import com.blackducksoftware.integration.hub.rest.CredentialsRestConnection;
+import com.blackducksoftware.integration.hub.service.HubServicesFactory;
+
+/**
+ * Validates a list of blackduck project versions with the rules of the {@code validate} goal. The versions are
+ * resolved and validated concurrently and a consolidated summary is logged, the build fails if any version fails.
+ * Unlike {@code validate}, a version which doesn't exist is never created and fails the validation.
+ */
+@Mojo(name = "validate-batch", aggregator = true, threadSafe = true)
+public class BlackduckValidateBatchMojo extends BlackduckValidateMojo {
+
+    /**
+     * The project versions to validate.
+     */
+    @Parameter
+    private List<BatchProject> projects;
+
+    /**
+     * Project versions to validate in addition of {@code projects}, as a comma separated list of {@code name:version}.
+     */
+    @Parameter(property = "hub-detect.batchProjects")
+    private String batchProjects;
+
+    /**
+     * How many project versions are validated concurrently.
+     */
+    @Parameter(property = "hub-detect.batchParallelism", defaultValue = "4")
+    private int batchParallelism;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        atTheEnd = false; // aggregator, it only runs once anyway
+        super.execute();
+    }
+
+    @Override
+    public void doExecute(final MavenProject mvnProject, final Server credentials)
+            throws MojoExecutionException, MojoFailureException {
+        final List<BatchProject> versions = getProjects();
+        if (versions.isEmpty()) {
+            getLog().warn("No project to validate, set projects or hub-detect.batchProjects");
+            return;
+        }
+        final List<PolicyRule> rules = createRules();
+        try { // fail fast on an invalid configuration
+            PolicyPlan.compile(rules, false);
+        } catch (final IllegalArgumentException iae) {
+            throw new MojoExecutionException(iae.getMessage(), iae);
+        }
+
+        final CredentialsRestConnection restConnection = createValidationConnection(credentials);
+        final HubServicesFactory hsf = new HubServicesFactory(restConnection);
+        // a mistyped version must fail, not be created with an empty (passing) BOM
+        final ProjectVersionResolver resolver = createResolver(hsf, false);
+        final ProjectValidator validator = createValidator(restConnection, hsf);
+
+        final ExecutorService pool =
+                Executors.newFixedThreadPool(Math.max(1, Math.min(batchParallelism, versions.size())), r -> {
+                    final Thread thread = new Thread(r, "blackduck-validate-batch");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        final List<String> summary = new ArrayList<>(versions.size());
+        int failed = 0;
+        try {
+            final List<Future<List<String>>> futures = new ArrayList<>(versions.size());
+            for (final BatchProject project : versions) {
+                futures.add(pool.submit(() -> {
+                    final ProjectVersionView versionView =
+                            resolver.resolve(project.getName(), project.getVersion()).getProjectVersionView();
+                    return validator.validate(versionView, rules, LEGACY_RULES, project + ": ");
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                List<String> failures;
+                try {
+                    failures = futures.get(i).get();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new MojoExecutionException("Interrupted while validating " + versions.get(i), e);
+                } catch (final ExecutionException e) {
+                    getLog().debug(e.getCause());
+                    failures = singletonList("Error: " + e.getCause().getMessage());
+                }
+                if (failures.isEmpty()) {
+                    summary.add(String.format("  PASS %s", versions.get(i)));
+                } else {
+                    failed++;
+                    summary.add(String.format("  FAIL %s: %s", versions.get(i), String.join(", ", failures)));
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        getLog().info(String.format("Validated %d project versions:", versions.size()));
+        summary.forEach(line -> {
+            if (line.startsWith("  FAIL")) {
+                getLog().error(line);
+            } else {
+                getLog().info(line);
+            }
+        });
+        if (failed > 0) {
+            throw new MojoFailureException(
+                    String.format("%d/%d project versions failed the validation", failed, versions.size()));
+        }
+    }
+
+    private List<BatchProject> getProjects() throws MojoExecutionException {
+        final List<BatchProject> all = new ArrayList<>();
+        if (projects != null) {
+            all.addAll(projects);
+        }
+        if (batchProjects != null) {
+            for (final String value : batchProjects.split(",")) {
+                final String project = value.trim();
+                if (project.isEmpty()) {
+                    continue;
+                }
+                final int separator = project.lastIndexOf(':');
+                if (separator <= 0 || separator == project.length() - 1) {
+                    throw new MojoExecutionException("Invalid project '" + project + "', expected name:version");
+                }
+                all.add(new BatchProject(project.substring(0, separator), project.substring(separator + 1)));
+            }
+        }
+        for (final BatchProject project : all) {
+            if (project.getName() == null || project.getVersion() == null) {
+                throw new MojoExecutionException("Invalid project '" + project + "', name and version are required");
+            }
+        }
+        return all;
+    }
+}
@@ -17,9 +17,10 @@ package org.talend.tools.blackduck;
 
 import static org.apache.maven.plugins.annotations.LifecyclePhase.VERIFY;
 
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.util.function.ToIntFunction;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -27,27 +28,19 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.settings.Server;
-import org.slf4j.LoggerFactory;
+import org.talend.tools.blackduck.ReportAggregator.Category;
+import org.talend.tools.blackduck.ReportAggregator.Severity;
 
-import com.blackducksoftware.integration.exception.EncryptionException;
-import com.blackducksoftware.integration.exception.IntegrationException;
-import com.blackducksoftware.integration.hub.CredentialsBuilder;
-import com.blackducksoftware.integration.hub.api.report.AggregateBomViewEntry;
-import com.blackducksoftware.integration.hub.api.report.ReportCategoriesEnum;
 import com.blackducksoftware.integration.hub.api.report.ReportRequestService;
-import com.blackducksoftware.integration.hub.api.report.VersionReport;
-import com.blackducksoftware.integration.hub.dataservice.project.ProjectDataService;
-import com.blackducksoftware.integration.hub.dataservice.project.ProjectVersionWrapper;
-import com.blackducksoftware.integration.hub.global.HubServerConfig;
-import com.blackducksoftware.integration.hub.model.enumeration.ReportFormatEnum;
-import com.blackducksoftware.integration.hub.proxy.ProxyInfoBuilder;
+import com.blackducksoftware.integration.hub.model.view.ProjectVersionView;
 import com.blackducksoftware.integration.hub.rest.CredentialsRestConnection;
 import com.blackducksoftware.integration.hub.service.HubServicesFactory;
-import com.blackducksoftware.integration.log.Slf4jIntLogger;
 
 @Mojo(name = "validate", defaultPhase = VERIFY, threadSafe = true)
 public class BlackduckValidateMojo extends BlackduckBase {
 
+    static final int LEGACY_RULES = 3;
+
     @Parameter(property = "hub-detect.alwaysTrustServerCertificate", defaultValue = "false")
     private boolean alwaysTrustServerCertificate;
 
@@ -60,67 +53,108 @@ public class BlackduckValidateMojo extends BlackduckBase {
     @Parameter(property = "hub-detect.acceptedVulerabilityRiskHigh", defaultValue = "0")
     private int acceptedVulerabilityRiskHigh;
 
+    /**
+     * Should the violation counters be cached (in the shared cache directory) and reused while the BOM of the
+     * project version didn't change. The BOM last update is checked with the (cheap) risk profile of the version.
+     */
+    @Parameter(property = "hub-detect.reportCache", defaultValue = "true")
+    private boolean reportCache;
+
+    /**
+     * How the violations are computed: {@code report} generates and sums the full components report,
+     * {@code riskProfile} reads the aggregated counters of the project version (one small request) and falls back on
+     * the full report if they are not all available. Note that the risk profile counts the components per risk level
+     * whereas the report sums the counters of each entry so the accepted* thresholds don't have the same meaning.
+     */
+    @Parameter(property = "hub-detect.validationEngine", defaultValue = "report")
+    private String validationEngine;
+
+    /**
+     * On failure, generate the full report (if not already done) to log the components in violation.
+     */
+    @Parameter(property = "hub-detect.detailedFailures", defaultValue = "false")
+    private boolean detailedFailures;
+
+    /**
+     * How long (in seconds) the snapshot of a release which doesn't exist in blackduck is not looked up again, 0 to
+     * disable. The exact version is always looked up and a successful hub-detect scan invalidates its entry.
+     */
+    @Parameter(property = "hub-detect.missingVersionTtl", defaultValue = "600")
+    private long missingVersionTtl;
+
+    /**
+     * How long (in seconds) to wait for the generation of a report.
+     */
+    @Parameter(property = "hub-detect.reportTimeout", defaultValue = "1800")
+    private long reportTimeout;
+
+    /**
+     * The maximum interval (in milliseconds) between two checks of the report generation, the interval starts at
+     * 500ms and doubles after each check.
+     */
+    @Parameter(property = "hub-detect.reportPollMaxInterval", defaultValue = "15000")
+    private long reportPollMaxInterval;
+
+    /**
+     * Additional rules validated with the accepted* thresholds, see {@link PolicyRule}.
+     */
+    @Parameter
+    private List<PolicyRule> policyRules;
+
     @Override
     public void doExecute(final MavenProject mvnProject, final Server credentials)
             throws MojoExecutionException, MojoFailureException {
-        final CredentialsBuilder credentialsBuilder = new CredentialsBuilder();
-        credentialsBuilder.setUsername(credentials.getUsername());
-        credentialsBuilder.setPassword(credentials.getPassword());
-        alwaysTrustServerCertificate = true;
-        final CredentialsRestConnection restConnection;
-        try {
-            restConnection = new HubServerConfig(new URL(blackduckUrl), 60, credentialsBuilder.buildObject(),
-                    new ProxyInfoBuilder().buildObject(), alwaysTrustServerCertificate)
-                            .createCredentialsRestConnection(new Slf4jIntLogger(LoggerFactory.getLogger("client")));
-        } catch (final MalformedURLException | EncryptionException e) {
-            throw new MojoExecutionException(e.getMessage(), e);
-        }
+        final CredentialsRestConnection restConnection = createValidationConnection(credentials);
         final HubServicesFactory hsf = new HubServicesFactory(restConnection);
-        final ReportRequestService reportService = hsf.createReportRequestService(60000);
-        final ProjectDataService projectService = hsf.createProjectDataService();
-        ProjectVersionWrapper project;
-        try {
-            project = projectService.getProjectVersion(blackduckName, mvnProject.getVersion());
-        } catch (final IntegrationException e) {
-            if (!mvnProject.getVersion().endsWith("-SNAPSHOT")) { // use the closest version, ie the snapshot
-                try {
-                    project = projectService.getProjectVersion(blackduckName, mvnProject.getVersion() + "-SNAPSHOT");
-                } catch (final IntegrationException e1) {
-                    try {
-                        project = projectService.getProjectVersionAndCreateIfNeeded(blackduckName, mvnProject.getVersion());
-                    } catch (final IntegrationException e2) {
-                        throw new MojoExecutionException(e.getMessage(), e);
-                    }
-                }
-            } else {
-                try {
-                    project = projectService.getProjectVersionAndCreateIfNeeded(blackduckName, mvnProject.getVersion());
-                } catch (final IntegrationException e2) {
-                    throw new MojoExecutionException(e.getMessage(), e);
-                }
-            }
-        }
-        final VersionReport report;
-        try {
-            report = reportService.generateHubReport(project.getProjectVersionView(), ReportFormatEnum.JSON,
-                    new ReportCategoriesEnum[] { ReportCategoriesEnum.COMPONENTS });
-        } catch (IntegrationException e) {
-            throw new MojoExecutionException(e.getMessage(), e);
+        final ProjectVersionView versionView =
+                createResolver(hsf, true).resolve(blackduckName, mvnProject.getVersion()).getProjectVersionView();
+        final List<String> failures =
+                createValidator(restConnection, hsf).validate(versionView, createRules(), LEGACY_RULES, "");
+        if (!failures.isEmpty()) {
+            throw new MojoFailureException(String.join("\n", failures));
         }
+    }
+
+    CredentialsRestConnection createValidationConnection(final Server credentials) throws MojoExecutionException {
+        alwaysTrustServerCertificate = true;
+        return createRestConnection(credentials, alwaysTrustServerCertificate);
+    }
+
+    /**
+     * @param create should a missing version be created, a validation only run must not create anything.
+     */
+    ProjectVersionResolver createResolver(final HubServicesFactory hsf, final boolean create) {
+        final MissingVersionCache missingVersions = missingVersionTtl > 0
+                ? new MissingVersionCache(new File(sharedCacheDirectory, MissingVersionCache.FILE_NAME).toPath(),
+                        TimeUnit.SECONDS.toMillis(missingVersionTtl), getLog())
+                : null;
+        return new ProjectVersionResolver(hsf.createProjectDataService(), blackduckUrl, missingVersions, create,
+                metrics(), getLog());
+    }
 
-        validate(report, "operational", it -> it.getRiskProfile().getCategories().getOPERATIONAL().getHIGH(),
-                acceptedOperationalHigh);
-        validate(report, "license", it -> it.getLicenseRisk().getHIGH(), acceptedLicenseRiskHigh);
-        validate(report, "vulnerability", it -> it.getVulnerabilityRisk().getHIGH(), acceptedVulerabilityRiskHigh);
+    ProjectValidator createValidator(final CredentialsRestConnection restConnection, final HubServicesFactory hsf) {
+        final ReportCache cache =
+                reportCache ? new ReportCache(new File(sharedCacheDirectory, "reports.properties").toPath(), getLog())
+                        : null;
+        final long timeout = TimeUnit.SECONDS.toMillis(reportTimeout);
+        final ReportRequestService reportService = hsf.createReportRequestService(timeout);
+        final ReportPoller poller = new ReportPoller(reportService, new File(sharedCacheDirectory, "reports").toPath(),
+                timeout, reportPollMaxInterval, metrics(), getLog());
+        return new ProjectValidator(restConnection, reportService, poller, cache,
+                "riskProfile".equalsIgnoreCase(validationEngine), detailedFailures, metrics(), getLog());
     }
 
-    private void validate(final VersionReport report, final String what, final ToIntFunction<AggregateBomViewEntry> mapper,
-            final int limit) throws MojoFailureException {
-        final int count = report.getAggregateBomViewEntries().stream().mapToInt(mapper).sum();
-        if (count > limit) {
-            final String message = String.format("Found #%d %s high violations, accepted: #%d", count, what, limit);
-            getLog().error(message);
-            throw new MojoFailureException(message);
+    // the accepted* thresholds first (LEGACY_RULES), then the custom ones
+    List<PolicyRule> createRules() {
+        final List<PolicyRule> rules = new ArrayList<>();
+        rules.add(new PolicyRule("operational", Category.OPERATIONAL.name(), Severity.HIGH.name(),
+                acceptedOperationalHigh));
+        rules.add(new PolicyRule("license", Category.LICENSE.name(), Severity.HIGH.name(), acceptedLicenseRiskHigh));
+        rules.add(new PolicyRule("vulnerability", Category.VULNERABILITY.name(), Severity.HIGH.name(),
+                acceptedVulerabilityRiskHigh));
+        if (policyRules != null) {
+            rules.addAll(policyRules);
         }
+        return rules;
     }
 }
@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+
+/**
+ * Build scoped timings (per phase) and counters (bytes, cache hits/misses) of the blackduck mojos, exported as JSON
+ * ({@code metrics.json}) and Prometheus text format ({@code metrics.prom}).
+ */
+class BuildMetrics {
+
+    // prefix of the counters of bytes, exported with their unit
+    static final String BYTES = "bytes.";
+
+    private final ConcurrentMap<String, Timing> timings = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    static BuildMetrics of(final MavenSession session) {
+        final Map<String, Object> data = session.getRequest().getData();
+        synchronized (data) {
+            return BuildMetrics.class.cast(data.computeIfAbsent(BuildMetrics.class.getName(), k -> new BuildMetrics()));
+        }
+    }
+
+    /**
+     * @return a started timer recording the duration of the phase when stopped, in a finally block.
+     */
+    Timer time(final String phase) {
+        return new Timer(this, phase, System.nanoTime());
+    }
+
+    void record(final String phase, final long durationNanos) {
+        timings.computeIfAbsent(phase, k -> new Timing()).add(durationNanos);
+    }
+
+    void increment(final String counter, final long delta) {
+        counters.computeIfAbsent(counter, k -> new LongAdder()).add(delta);
+    }
+
+    void cache(final String cache, final boolean hit) {
+        increment("cache." + cache + (hit ? ".hit" : ".miss"), 1);
+    }
+
+    void write(final Path directory, final Log log) {
+        final Map<String, Timing> sortedTimings = new TreeMap<>(timings);
+        final Map<String, LongAdder> sortedCounters = new TreeMap<>(counters);
+
+        final JsonObject json = new JsonObject();
+        final JsonObject phases = new JsonObject();
+        sortedTimings.forEach((name, timing) -> {
+            final JsonObject phase = new JsonObject();
+            synchronized (timing) {
+                phase.addProperty("count", timing.count);
+                phase.addProperty("totalMs", TimeUnit.NANOSECONDS.toMillis(timing.total));
+                phase.addProperty("maxMs", TimeUnit.NANOSECONDS.toMillis(timing.max));
+            }
+            phases.add(name, phase);
+        });
+        json.add("phases", phases);
+        final JsonObject counterValues = new JsonObject();
+        sortedCounters.forEach((name, value) -> counterValues.addProperty(name, value.sum()));
+        json.add("counters", counterValues);
+
+        final StringBuilder prometheus = new StringBuilder();
+        prometheus.append("# TYPE blackduck_phase_duration_seconds summary\n");
+        sortedTimings.forEach((name, timing) -> {
+            synchronized (timing) {
+                prometheus.append(String.format(Locale.ROOT,
+                        "blackduck_phase_duration_seconds_sum{phase=\"%s\"} %.3f\n", name, timing.total / 1e9));
+                prometheus.append(String.format(Locale.ROOT,
+                        "blackduck_phase_duration_seconds_count{phase=\"%s\"} %d\n", name, timing.count));
+            }
+        });
+        prometheus.append("# TYPE blackduck_phase_duration_seconds_max gauge\n");
+        sortedTimings.forEach((name, timing) -> {
+            synchronized (timing) {
+                prometheus.append(String.format(Locale.ROOT,
+                        "blackduck_phase_duration_seconds_max{phase=\"%s\"} %.3f\n", name, timing.max / 1e9));
+            }
+        });
+        prometheus.append("# TYPE blackduck_events_total counter\n");
+        sortedCounters.forEach((name, value) -> {
+            if (!name.startsWith(BYTES)) {
+                prometheus.append(
+                        String.format(Locale.ROOT, "blackduck_events_total{name=\"%s\"} %d\n", name, value.sum()));
+            }
+        });
+        prometheus.append("# TYPE blackduck_bytes_total counter\n");
+        sortedCounters.forEach((name, value) -> {
+            if (name.startsWith(BYTES)) {
+                prometheus.append(String.format(Locale.ROOT, "blackduck_bytes_total{name=\"%s\"} %d\n",
+                        name.substring(BYTES.length()), value.sum()));
+            }
+        });
+
+        try {
+            Files.createDirectories(directory);
+            write(directory.resolve("metrics.json"), new GsonBuilder().setPrettyPrinting().create().toJson(json));
+            write(directory.resolve("metrics.prom"), prometheus.toString());
+        } catch (final IOException e) {
+            log.warn("Can't write the metrics in " + directory + ": " + e.getMessage());
+        }
+    }
+
+    // concurrent executions (async, parallel builds) can export at the same time
+    private static synchronized void write(final Path file, final String content) throws IOException {
+        final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, content.getBytes(UTF_8));
+        try {
+            Files.move(tmp, file, ATOMIC_MOVE, REPLACE_EXISTING);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(tmp, file, REPLACE_EXISTING);
+        }
+    }
+
+    static class Timer {
+
+        private final BuildMetrics metrics;
+
+        private final String phase;
+
+        private final long start;
+
+        private Timer(final BuildMetrics metrics, final String phase, final long start) {
+            this.metrics = metrics;
+            this.phase = phase;
+            this.start = start;
+        }
+
+        void stop() {
+            metrics.record(phase, System.nanoTime() - start);
+        }
+    }
+
+    private static class Timing {
+
+        private long count;
+
+        private long total;
+
+        private long max;
+
+        private synchronized void add(final long duration) {
+            count++;
+            total += duration;
+            max = Math.max(max, duration);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.UUID;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Dynamic class data sharing (AppCDS) archive of a hub-detect jar for the running JVM. The first execution dumps the
+ * loaded classes at exit, the next ones map the archive to start faster. It requires java 13 or later.
+ */
+class ClassDataSharingArchive {
+
+    private final Path archive;
+
+    private final Path baseline;
+
+    private final Log log;
+
+    private Path dump;
+
+    private long start;
+
+    ClassDataSharingArchive(final Path jar, final Log log) {
+        // archives are only valid for the exact JVM which created them
+        final String vm = (System.getProperty("java.vm.vendor", "") + '_' + System.getProperty("java.vm.version", ""))
+                .replaceAll("[^a-zA-Z0-9._-]", "_");
+        this.archive = jar.resolveSibling(jar.getFileName() + "." + vm + ".jsa");
+        this.baseline = archive.resolveSibling(archive.getFileName() + ".baseline");
+        this.log = log;
+    }
+
+    static boolean isSupported() {
+        final String version = System.getProperty("java.specification.version", "1.8");
+        if (version.startsWith("1.")) {
+            return false;
+        }
+        try {
+            return Integer.parseInt(version) >= 13;
+        } catch (final NumberFormatException nfe) {
+            return false;
+        }
+    }
+
+    /**
+     * @return true if the user already tuned the class data sharing.
+     */
+    static boolean isConfigured(final Collection<String> jvmOptions) {
+        return jvmOptions != null && jvmOptions.stream().anyMatch(it -> it.startsWith("-Xshare")
+                || it.startsWith("-XX:SharedArchiveFile") || it.startsWith("-XX:ArchiveClassesAtExit"));
+    }
+
+    /**
+     * @return the JVM option to use for this execution.
+     */
+    String prepare() {
+        start = System.nanoTime();
+        if (Files.isRegularFile(archive)) {
+            dump = null;
+            return "-XX:SharedArchiveFile=" + archive;
+        }
+        // concurrent builds dump in their own file, the first one to finish publishes it
+        dump = archive.resolveSibling(archive.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        return "-XX:ArchiveClassesAtExit=" + dump;
+    }
+
+    void onExit() {
+        final long duration = (System.nanoTime() - start) / 1000000;
+        if (dump == null) {
+            final String reference = readBaseline();
+            log.info(String.format("hub-detect execution took %dms with class data sharing archive%s", duration,
+                    reference == null ? "" : " (" + reference + "ms without)"));
+            return;
+        }
+        log.info(String.format("hub-detect execution took %dms without class data sharing archive", duration));
+        try {
+            if (!Files.isRegularFile(dump)) {
+                log.debug("No class data sharing archive was dumped");
+                return;
+            }
+            try {
+                Files.move(dump, archive, ATOMIC_MOVE, REPLACE_EXISTING);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(dump, archive, REPLACE_EXISTING);
+            }
+            Files.write(baseline, Long.toString(duration).getBytes(UTF_8));
+            log.info(String.format("Created class data sharing archive '%s'", archive));
+        } catch (final IOException e) {
+            log.warn(String.format("Can't store class data sharing archive '%s': %s", archive, e.getMessage()));
+        } finally {
+            try {
+                Files.deleteIfExists(dump);
+            } catch (final IOException e) {
+                // no-op
+            }
+        }
+    }
+
+    private String readBaseline() {
+        try {
+            return Files.isRegularFile(baseline) ? new String(Files.readAllBytes(baseline), UTF_8).trim() : null;
+        } catch (final IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.resolver.filter.ScopeArtifactFilter;
+import org.apache.maven.project.MavenProject;
+
+import com.blackducksoftware.integration.hub.bdio.SimpleBdioFactory;
+import com.blackducksoftware.integration.hub.bdio.graph.MutableDependencyGraph;
+import com.blackducksoftware.integration.hub.bdio.model.SimpleBdioDocument;
+import com.blackducksoftware.integration.hub.bdio.model.dependency.Dependency;
+
+/**
+ * Writes the dependency graph resolved by the build for the reactor projects as a BDIO document, it avoids hub-detect
+ * to relaunch maven to compute it.
+ */
+class DependencyGraphExporter {
+
+    private final SimpleBdioFactory factory = new SimpleBdioFactory();
+
+    private final ScopeArtifactFilter filter;
+
+    private final Set<String> reactorModules;
+
+    private final Map<MavenProject, Set<Artifact>> dependencies;
+
+    /**
+     * @param dependencies the resolved artifacts (with their dependency trail) of each reactor project.
+     */
+    DependencyGraphExporter(final Map<MavenProject, Set<Artifact>> dependencies, final String scope) {
+        this.dependencies = dependencies;
+        this.filter = new ScopeArtifactFilter(scope);
+        this.reactorModules =
+                dependencies.keySet().stream().map(p -> p.getGroupId() + ':' + p.getArtifactId()).collect(toSet());
+    }
+
+    /**
+     * @return the number of components of the graph.
+     */
+    int export(final File output, final String codeLocationName, final String projectName,
+            final String projectVersionName, final MavenProject rootProject) throws IOException {
+        final MutableDependencyGraph graph = factory.createMutableDependencyGraph();
+        int count = 0;
+        for (final Set<Artifact> projectArtifacts : dependencies.values()) {
+            final Map<String, Artifact> artifacts =
+                    projectArtifacts.stream().collect(toMap(Artifact::getId, identity(), (a, b) -> a));
+            for (final Artifact artifact : projectArtifacts) {
+                if (!isScanned(artifact)) {
+                    continue;
+                }
+                final Dependency dependency = toDependency(artifact);
+                final Dependency parent = findParent(artifact, artifacts);
+                if (parent == null) {
+                    graph.addChildToRoot(dependency);
+                } else {
+                    graph.addChildWithParent(dependency, parent);
+                }
+                count++;
+            }
+        }
+
+        final SimpleBdioDocument document = factory.createSimpleBdioDocument(codeLocationName, projectName,
+                projectVersionName, factory.createMavenExternalId(rootProject.getGroupId(), rootProject.getArtifactId(),
+                        rootProject.getVersion()),
+                graph);
+        output.getParentFile().mkdirs();
+        factory.writeSimpleBdioDocumentToFile(output, document);
+        return count;
+    }
+
+    // the closest scanned ancestor in the trail, reactor modules are flattened since they are not components
+    private Dependency findParent(final Artifact artifact, final Map<String, Artifact> artifacts) {
+        final List<String> trail = artifact.getDependencyTrail();
+        if (trail == null) {
+            return null;
+        }
+        for (int i = trail.size() - 2; i > 0; i--) {
+            final Artifact ancestor = artifacts.get(trail.get(i));
+            if (ancestor != null && isScanned(ancestor)) {
+                return toDependency(ancestor);
+            }
+        }
+        return null;
+    }
+
+    private boolean isScanned(final Artifact artifact) {
+        return filter.include(artifact)
+                && !reactorModules.contains(artifact.getGroupId() + ':' + artifact.getArtifactId());
+    }
+
+    private Dependency toDependency(final Artifact artifact) {
+        return new Dependency(artifact.getArtifactId(), artifact.getVersion(),
+                factory.createMavenExternalId(artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion()));
+    }
+}
@@ -0,0 +1,243 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Hands hub-detect executions to a {@link DetectWorker}, (re)launching it when there is no healthy worker for this
+ * jar and JVM options.
+ */
+class DetectDaemonClient {
+
+    // the worker traps System.exit with a SecurityManager, removed in java 24
+    private static final int LAST_SUPPORTED_JAVA = 23;
+
+    // -Djava.security.manager=allow exists since java 12 and is required from java 18
+    private static final int ALLOW_SECURITY_MANAGER_JAVA = 12;
+
+    private static final int HEALTH_CHECK_TIMEOUT = 5000;
+
+    private static final long STARTUP_TIMEOUT = TimeUnit.MINUTES.toMillis(1);
+
+    private final File java;
+
+    private final File jar;
+
+    private final Collection<String> jvmOptions;
+
+    private final Path state;
+
+    private final long idleTimeout;
+
+    private final Log log;
+
+    DetectDaemonClient(final File java, final File jar, final Collection<String> jvmOptions, final String version,
+            final File directory, final long idleTimeout, final Log log) {
+        this.java = java;
+        this.jar = jar;
+        this.jvmOptions = jvmOptions;
+        this.idleTimeout = idleTimeout;
+        this.log = log;
+        // one worker per jar, jvm setup and plugin version (the worker protocol can change between versions)
+        final String key = jar.getAbsolutePath() + '|' + jvmOptions + '|' + java.getAbsolutePath() + '|' + version;
+        this.state = directory.toPath().resolve(Integer.toHexString(key.hashCode()) + ".worker");
+    }
+
+    /**
+     * @return true if the worker can run in the current java version.
+     */
+    static boolean isSupported() {
+        return javaVersion() <= LAST_SUPPORTED_JAVA;
+    }
+
+    static int javaVersion() {
+        final String version = System.getProperty("java.specification.version", "1.8");
+        try {
+            return Integer.parseInt(version.startsWith("1.") ? version.substring(2) : version);
+        } catch (final NumberFormatException nfe) {
+            return 8;
+        }
+    }
+
+    /**
+     * @param args the detect arguments, the configuration must be passed as {@code --key=value} arguments since the
+     * worker doesn't set any system property.
+     * @return the exit code of the execution.
+     * @throws WorkerUnavailableException if no worker can be started, nothing was executed then.
+     */
+    int execute(final List<String> args, final Consumer<String> output) throws IOException {
+        final String[] endpoint = ensureWorker();
+        try (final Socket socket = connect(endpoint, 0);
+                final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            out.writeUTF(endpoint[1]);
+            out.writeUTF(DetectWorker.RUN);
+            out.writeInt(args.size());
+            for (final String arg : args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+            while (true) {
+                final byte type = in.readByte();
+                if (type == DetectWorker.OUTPUT) {
+                    output.accept(in.readUTF());
+                } else if (type == DetectWorker.EXIT) {
+                    return in.readInt();
+                } else {
+                    throw new IOException("Unexpected frame from the detect worker: " + type);
+                }
+            }
+        } catch (final EOFException eof) {
+            throw new IOException("Detect worker stopped during the execution, see " + logFile(), eof);
+        }
+    }
+
+    private String[] ensureWorker() throws IOException {
+        final String[] endpoint = readState();
+        if (endpoint != null && isHealthy(endpoint)) {
+            return endpoint;
+        }
+        return SharedCache.withLock(state.resolveSibling(state.getFileName() + ".lock"), () -> {
+            final String[] current = readState(); // another build can have launched it meanwhile
+            if (current != null && isHealthy(current)) {
+                return current;
+            }
+            Files.deleteIfExists(state);
+            final Process process = launch();
+            final long end = System.currentTimeMillis() + STARTUP_TIMEOUT;
+            while (System.currentTimeMillis() < end) {
+                final String[] started = readState();
+                if (started != null && isHealthy(started)) {
+                    return started;
+                }
+                if (!process.isAlive()) { // bad JVM options for instance, don't wait for the timeout
+                    throw new WorkerUnavailableException(String.format("Detect worker exited with status %d, see %s",
+                            process.exitValue(), logFile()));
+                }
+                try {
+                    TimeUnit.MILLISECONDS.sleep(200);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+            process.destroyForcibly();
+            throw new WorkerUnavailableException("Detect worker didn't start, see " + logFile());
+        });
+    }
+
+    private Process launch() throws IOException {
+        final List<String> command = new ArrayList<>();
+        command.add(java.getAbsolutePath());
+        if (jvmOptions != null) {
+            command.addAll(jvmOptions);
+        }
+        final int javaVersion = javaVersion();
+        if (javaVersion >= ALLOW_SECURITY_MANAGER_JAVA && javaVersion <= LAST_SUPPORTED_JAVA) {
+            command.add("-Djava.security.manager=allow"); // else System.exit can't be trapped
+        }
+        command.add("-cp");
+        command.add(pluginClasspath());
+        command.add(DetectWorker.class.getName());
+        command.add(jar.getAbsolutePath());
+        command.add(state.toAbsolutePath().toString());
+        command.add(Long.toString(idleTimeout));
+        log.info("Launching detect worker: " + command);
+        Files.createDirectories(state.getParent());
+        final File logFile = logFile();
+        return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(logFile).start();
+    }
+
+    private boolean isHealthy(final String[] endpoint) {
+        try (final Socket socket = connect(endpoint, HEALTH_CHECK_TIMEOUT);
+                final DataInputStream in = new DataInputStream(socket.getInputStream());
+                final DataOutputStream out = new DataOutputStream(socket.getOutputStream())) {
+            out.writeUTF(endpoint[1]);
+            out.writeUTF(DetectWorker.PING);
+            out.flush();
+            return in.readByte() == DetectWorker.PONG;
+        } catch (final IOException e) {
+            log.debug("Detect worker is not healthy: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private Socket connect(final String[] endpoint, final int timeout) throws IOException {
+        final Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(endpoint[0])),
+                    HEALTH_CHECK_TIMEOUT);
+            socket.setSoTimeout(timeout);
+            return socket;
+        } catch (final IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private String[] readState() throws IOException {
+        if (!Files.isRegularFile(state)) {
+            return null;
+        }
+        final String[] lines = new String(Files.readAllBytes(state), UTF_8).split("\n");
+        return lines.length == 2 ? lines : null;
+    }
+
+    private File logFile() {
+        return state.resolveSibling(state.getFileName() + ".log").toFile();
+    }
+
+    private static String pluginClasspath() {
+        try {
+            return new File(DetectWorker.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                    .getAbsolutePath();
+        } catch (final URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The worker can't be started, the caller can fork hub-detect instead.
+     */
+    static class WorkerUnavailableException extends IOException {
+
+        private WorkerUnavailableException(final String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,332 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Consumes the hub-detect output: each line is written to a rotating log file, parsed to track the detect phases and
+ * forwarded to the maven log at the level detect logged it. The console is fed by its own thread through a bounded
+ * queue, if the console is too slow the lines are only kept in the file so the child process is never throttled.
+ */
+class DetectOutput implements AutoCloseable {
+
+    private static final Pattern LEVEL = Pattern.compile("\\b(TRACE|DEBUG|INFO|WARN|WARNING|ERROR)\\b");
+
+    // line prefix where the level is searched, after the timestamp
+    private static final int LEVEL_PREFIX = 48;
+
+    private static final Phase[] PHASES = { new Phase("startup", "Detect Version"),
+            new Phase("detectors", "(Running|Extracting|Searching).*(detector|bom tool|Bom Tool)"),
+            new Phase("signature-scan", "(Starting|Running) the .*(signature )?scan"),
+            new Phase("upload", "(Uploading|Upload) (BDIO|bdio|the)"),
+            new Phase("report", "(Waiting for the BOM|Creating .*report|Risk Report)"),
+            new Phase("done", "Overall Status:|Hub Detect run duration|Detect duration") };
+
+    private static final Line END = new Line(null, null);
+
+    private final Log log;
+
+    private final Level consoleLevel;
+
+    private final BuildMetrics metrics;
+
+    private final RotatingFile file;
+
+    private final BlockingQueue<Line> console = new ArrayBlockingQueue<>(8192);
+
+    private final Thread consoleWriter;
+
+    private final List<Thread> readers = new ArrayList<>(2);
+
+    private Level lastLevel = Level.INFO;
+
+    private String phase;
+
+    private long phaseStart;
+
+    private long dropped;
+
+    /**
+     * @param file optional, the raw output log.
+     * @param consoleLevel the minimum level of the lines forwarded to the maven log.
+     */
+    DetectOutput(final Log log, final Path file, final long maxFileSize, final int files, final String consoleLevel,
+            final BuildMetrics metrics) throws IOException {
+        this.log = log;
+        this.consoleLevel = Level.parse(consoleLevel, Level.INFO);
+        this.metrics = metrics;
+        this.file = file == null ? null : new RotatingFile(file, maxFileSize, files);
+        this.consoleWriter = new Thread(this::writeConsole, "hub-detect-console");
+        this.consoleWriter.setDaemon(true);
+        this.consoleWriter.start();
+    }
+
+    /**
+     * Starts the threads reading the output of the process.
+     */
+    void pump(final Process process) {
+        readers.add(startReader(process.getInputStream(), false, "hub-detect-stdout"));
+        readers.add(startReader(process.getErrorStream(), true, "hub-detect-stderr"));
+    }
+
+    /**
+     * Handles a line, thread safe.
+     */
+    synchronized void accept(final String line, final boolean stderr) {
+        if (file != null) {
+            try {
+                file.write(line);
+            } catch (final IOException e) {
+                log.debug("Can't write hub-detect log: " + e.getMessage());
+            }
+        }
+        final Level level = findLevel(line, stderr);
+        lastLevel = level;
+        trackPhase(line);
+        if (level.ordinal() < consoleLevel.ordinal()) {
+            return;
+        }
+        if (!console.offer(new Line(level, line))) {
+            dropped++;
+        }
+    }
+
+    /**
+     * Waits for the end of the process output (once the process exited) and flushes the console.
+     */
+    @Override
+    public void close() {
+        for (final Thread reader : readers) {
+            try {
+                reader.join();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        synchronized (this) {
+            finishPhase();
+        }
+        try {
+            console.put(END);
+            consoleWriter.join(TimeUnit.MINUTES.toMillis(1));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (file != null) {
+            try {
+                file.close();
+            } catch (final IOException e) {
+                log.debug("Can't close hub-detect log: " + e.getMessage());
+            }
+        }
+        if (dropped > 0) {
+            log.warn(String.format("%d hub-detect lines were not logged (console too slow), see %s", dropped,
+                    file != null ? file.path : "the hub-detect log"));
+        }
+    }
+
+    private Thread startReader(final InputStream stream, final boolean stderr, final String name) {
+        final Thread thread = new Thread(() -> {
+            try (final BufferedReader reader = new BufferedReader(new InputStreamReader(stream, UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    accept(line, stderr);
+                }
+            } catch (final IOException e) {
+                log.debug("Can't read hub-detect output: " + e.getMessage());
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private void writeConsole() {
+        try {
+            while (true) {
+                final Line line = console.take();
+                if (line == END) {
+                    return;
+                }
+                switch (line.level) {
+                case ERROR:
+                    log.error(line.value);
+                    break;
+                case WARN:
+                    log.warn(line.value);
+                    break;
+                case INFO:
+                    log.info(line.value);
+                    break;
+                default:
+                    log.debug(line.value);
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Level findLevel(final String line, final boolean stderr) {
+        if (line.isEmpty() || Character.isWhitespace(line.charAt(0)) || line.startsWith("Caused by")) {
+            return lastLevel; // continuation of a multiline message (stack trace)
+        }
+        final Matcher matcher = LEVEL.matcher(line);
+        matcher.region(0, Math.min(line.length(), LEVEL_PREFIX));
+        if (matcher.find()) {
+            return Level.parse(matcher.group(1), Level.INFO);
+        }
+        return stderr ? Level.WARN : Level.INFO;
+    }
+
+    private void trackPhase(final String line) {
+        for (final Phase candidate : PHASES) {
+            if (candidate.name.equals(phase) || !candidate.marker.matcher(line).find()) {
+                continue;
+            }
+            finishPhase();
+            phase = candidate.name;
+            phaseStart = System.nanoTime();
+            if (!console.offer(new Line(Level.INFO, "hub-detect phase: " + phase))) {
+                dropped++;
+            }
+            return;
+        }
+    }
+
+    private void finishPhase() {
+        if (phase != null) {
+            metrics.record("detect." + phase, System.nanoTime() - phaseStart);
+            phase = null;
+        }
+    }
+
+    private enum Level {
+        DEBUG,
+        INFO,
+        WARN,
+        ERROR;
+
+        private static Level parse(final String value, final Level defaultValue) {
+            switch (value.toUpperCase(Locale.ROOT)) {
+            case "TRACE":
+            case "DEBUG":
+                return DEBUG;
+            case "INFO":
+                return INFO;
+            case "WARN":
+            case "WARNING":
+                return WARN;
+            case "ERROR":
+                return ERROR;
+            default:
+                return defaultValue;
+            }
+        }
+    }
+
+    private static class Phase {
+
+        private final String name;
+
+        private final Pattern marker;
+
+        private Phase(final String name, final String marker) {
+            this.name = name;
+            this.marker = Pattern.compile(marker);
+        }
+    }
+
+    private static class Line {
+
+        private final Level level;
+
+        private final String value;
+
+        private Line(final Level level, final String value) {
+            this.level = level;
+            this.value = value;
+        }
+    }
+
+    // file, file.1, ..., file.<files - 1>
+    private static class RotatingFile {
+
+        private final Path path;
+
+        private final long maxSize;
+
+        private final int files;
+
+        private Writer writer;
+
+        private long size;
+
+        private RotatingFile(final Path path, final long maxSize, final int files) throws IOException {
+            this.path = path;
+            this.maxSize = maxSize;
+            this.files = Math.max(1, files);
+            Files.createDirectories(path.getParent());
+            rotate();
+        }
+
+        private void write(final String line) throws IOException {
+            if (maxSize > 0 && size > maxSize) {
+                writer.close();
+                rotate();
+            }
+            writer.write(line);
+            writer.write('\n');
+            size += line.length() + 1;
+        }
+
+        private void rotate() throws IOException {
+            for (int i = files - 1; i > 0; i--) {
+                final Path from = i == 1 ? path : path.resolveSibling(path.getFileName() + "." + (i - 1));
+                if (Files.exists(from)) {
+                    Files.move(from, path.resolveSibling(path.getFileName() + "." + i), REPLACE_EXISTING);
+                }
+            }
+            writer = Files.newBufferedWriter(path, UTF_8);
+            size = 0;
+        }
+
+        private void close() throws IOException {
+            writer.close();
+        }
+    }
+}
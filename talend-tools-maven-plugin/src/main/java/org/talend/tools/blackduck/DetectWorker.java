@@ -0,0 +1,490 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Collections.singletonList;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.AclEntry;
+import java.nio.file.attribute.AclEntryPermission;
+import java.nio.file.attribute.AclEntryType;
+import java.nio.file.attribute.AclFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.Permission;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * Long running hub-detect worker. It listens on a loopback socket and runs the requested scans one at a time in the
+ * same (warm) JVM. The classes of the jar are loaded once by a class loader kept for the whole life of the worker, a
+ * Spring Boot jar is exploded next to the state file so its application classes and libraries are loaded directly
+ * instead of through a new launcher class loader per run. It stops itself after an idle timeout.
+ *
+ * Protocol (DataInput/DataOutput framing): the client sends the token and a command. {@code PING} is answered by
+ * {@code P}. {@code RUN} is followed by the number of arguments and the arguments (the configuration is passed as
+ * {@code --key=value} arguments, the worker never touches the JVM system properties), then the worker streams
+ * {@code O} frames (one output line each) and ends with {@code X} and the exit code.
+ */
+public final class DetectWorker {
+
+    static final String PING = "PING";
+
+    static final String RUN = "RUN";
+
+    static final byte PONG = 'P';
+
+    static final byte OUTPUT = 'O';
+
+    static final byte EXIT = 'X';
+
+    // exit code of an execution which failed without calling System.exit
+    static final int FAILED = -1;
+
+    private final File jar;
+
+    private final File state;
+
+    private final long idleTimeout;
+
+    private final String token = new UUID(new SecureRandom().nextLong(), new SecureRandom().nextLong()).toString();
+
+    private final ReentrantLock runLock = new ReentrantLock(true);
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    private final AtomicLong lastActivity = new AtomicLong(System.currentTimeMillis());
+
+    private final PrintStream console = System.out;
+
+    private final Redirect redirect = new Redirect(console);
+
+    private volatile ServerSocket server;
+
+    private URLClassLoader loader; // guarded by runLock
+
+    private Method main; // guarded by runLock
+
+    private DetectWorker(final File jar, final File state, final long idleTimeout) {
+        this.jar = jar;
+        this.state = state;
+        this.idleTimeout = idleTimeout;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length != 3) {
+            System.err.println("Usage: DetectWorker <detect jar> <state file> <idle timeout ms>");
+            System.exit(1);
+        }
+        try {
+            ExitTrap.install();
+        } catch (final UnsupportedOperationException | SecurityException e) {
+            System.err.println("Can't intercept System.exit in this JVM, the worker can't be used: " + e.getMessage());
+            System.exit(2);
+        }
+        new DetectWorker(new File(args[0]), new File(args[1]), Long.parseLong(args[2])).serve();
+    }
+
+    private void serve() throws IOException {
+        // installed once, the executions only switch its target
+        final PrintStream redirected = new PrintStream(redirect, true, "UTF-8");
+        System.setOut(redirected);
+        System.setErr(redirected);
+        Thread.setDefaultUncaughtExceptionHandler((thread, error) -> {
+            if (!ExitTrap.Exit.class.isInstance(error)) { // System.exit from a detect thread, the status is enough
+                ExitTrap.ERROR.compareAndSet(null, error);
+                error.printStackTrace();
+            }
+        });
+
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        writeState();
+        final Thread idleChecker = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    TimeUnit.SECONDS.sleep(1);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (active.get() == 0 && System.currentTimeMillis() - lastActivity.get() > idleTimeout) {
+                    console.println("Idle timeout reached, stopping the worker");
+                    shutdown();
+                }
+            }
+        }, "detect-worker-idle");
+        idleChecker.setDaemon(true);
+        idleChecker.start();
+
+        while (!server.isClosed()) {
+            final Socket socket;
+            try {
+                socket = server.accept();
+            } catch (final SocketException se) { // closed
+                break;
+            }
+            final Thread handler = new Thread(() -> handle(socket), "detect-worker-client");
+            handler.setDaemon(true);
+            handler.start();
+        }
+        Runtime.getRuntime().halt(0); // detect can leave non daemon threads
+    }
+
+    private void handle(final Socket socket) {
+        active.incrementAndGet();
+        try (final Socket s = socket;
+                final DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+                final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+            if (!token.equals(in.readUTF())) {
+                return;
+            }
+            final String command = in.readUTF();
+            if (PING.equals(command)) {
+                out.writeByte(PONG);
+                out.flush();
+            } else if (RUN.equals(command)) {
+                final String[] args = new String[in.readInt()];
+                for (int i = 0; i < args.length; i++) {
+                    args[i] = in.readUTF();
+                }
+                runLock.lock();
+                try {
+                    final int exitCode = run(args, out);
+                    synchronized (out) {
+                        out.writeByte(EXIT);
+                        out.writeInt(exitCode);
+                        out.flush();
+                    }
+                } finally {
+                    runLock.unlock();
+                }
+            }
+        } catch (final IOException e) {
+            console.println("Client error: " + e.getMessage());
+        } finally {
+            lastActivity.set(System.currentTimeMillis());
+            active.decrementAndGet();
+        }
+    }
+
+    // executions are serialized (runLock): the exit trap, the output redirection and detect itself are JVM wide
+    private int run(final String[] args, final DataOutputStream out) throws IOException {
+        final LineForwarder forwarder = new LineForwarder(out);
+        final PrintStream forward = new PrintStream(forwarder, true, "UTF-8");
+        final Thread thread = Thread.currentThread();
+        final ClassLoader originalLoader = thread.getContextClassLoader();
+        final Set<Thread> threads = new HashSet<>(Thread.getAllStackTraces().keySet());
+        ExitTrap.STATUS.set(null);
+        ExitTrap.ERROR.set(null);
+        redirect.target = forwarder;
+        try {
+            final Method entryPoint = mainMethod();
+            thread.setContextClassLoader(loader);
+            entryPoint.invoke(null, new Object[] { args });
+            return exitStatus(null, forward);
+        } catch (final InvocationTargetException ite) {
+            return exitStatus(ite.getTargetException(), forward);
+        } catch (final ReflectiveOperationException e) {
+            e.printStackTrace(forward);
+            return FAILED;
+        } finally {
+            forward.flush();
+            redirect.target = null;
+            thread.setContextClassLoader(originalLoader);
+            reportLeftThreads(threads);
+        }
+    }
+
+    // System.exit can come from any detect thread, a failure without exit is never a success
+    private int exitStatus(final Throwable mainError, final PrintStream forward) {
+        final Integer status = ExitTrap.STATUS.get();
+        if (status != null) {
+            return status;
+        }
+        final Throwable error = mainError != null ? mainError : ExitTrap.ERROR.get();
+        if (error != null) {
+            error.printStackTrace(forward);
+            return FAILED;
+        }
+        return 0;
+    }
+
+    private Method mainMethod() throws IOException, ReflectiveOperationException {
+        if (main == null) {
+            final List<URL> classpath = new ArrayList<>();
+            final String mainClass;
+            try (final JarFile jarFile = new JarFile(jar)) {
+                final Attributes attributes = jarFile.getManifest().getMainAttributes();
+                final String startClass = attributes.getValue("Start-Class");
+                if (startClass != null && jarFile.getEntry("BOOT-INF/classes/") != null) {
+                    explode(jarFile, classpath);
+                    mainClass = startClass;
+                } else {
+                    classpath.add(jar.toURI().toURL());
+                    mainClass = attributes.getValue("Main-Class");
+                }
+            }
+            loader = new URLClassLoader(classpath.toArray(new URL[0]), ClassLoader.getSystemClassLoader().getParent());
+            main = loader.loadClass(mainClass).getMethod("main", String[].class);
+        }
+        return main;
+    }
+
+    // the nested jars of a Spring Boot jar can't be read by a URLClassLoader, they are extracted once per worker
+    private void explode(final JarFile jarFile, final List<URL> classpath) throws IOException {
+        final Path root = state.toPath().resolveSibling(state.getName() + ".classpath");
+        deleteRecursively(root);
+        final Path classes = root.resolve("classes");
+        Files.createDirectories(classes);
+        classpath.add(classes.toUri().toURL());
+        final Enumeration<JarEntry> entries = jarFile.entries();
+        while (entries.hasMoreElements()) {
+            final JarEntry entry = entries.nextElement();
+            final String name = entry.getName();
+            final Path target;
+            if (name.startsWith("BOOT-INF/classes/") && !entry.isDirectory()) {
+                target = classes.resolve(name.substring("BOOT-INF/classes/".length())).normalize();
+            } else if (name.startsWith("BOOT-INF/lib/") && name.endsWith(".jar")) {
+                target = root.resolve("lib").resolve(name.substring("BOOT-INF/lib/".length())).normalize();
+                classpath.add(target.toUri().toURL());
+            } else {
+                continue;
+            }
+            if (!target.startsWith(root)) {
+                throw new IOException("Invalid entry " + name);
+            }
+            Files.createDirectories(target.getParent());
+            try (final InputStream in = jarFile.getInputStream(entry)) {
+                Files.copy(in, target, REPLACE_EXISTING);
+            }
+        }
+    }
+
+    private void reportLeftThreads(final Set<Thread> before) {
+        final List<String> left = new ArrayList<>();
+        for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (!before.contains(thread) && thread.isAlive() && !thread.isDaemon()) {
+                left.add(thread.getName());
+            }
+        }
+        if (!left.isEmpty()) {
+            console.println("The execution left " + left.size() + " non daemon threads running: " + left);
+        }
+    }
+
+    private void writeState() throws IOException {
+        final Path path = state.toPath();
+        Files.createDirectories(path.getParent());
+        final Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.deleteIfExists(tmp);
+        createPrivateFile(tmp); // before writing the token, any local user could use the worker else
+        Files.write(tmp, (server.getLocalPort() + "\n" + token + "\n").getBytes(UTF_8));
+        Files.move(tmp, path, ATOMIC_MOVE, REPLACE_EXISTING);
+    }
+
+    // owner only: rw------- with POSIX permissions, an ACL granting only the owner otherwise (windows)
+    static void createPrivateFile(final Path file) throws IOException {
+        if (file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+            return;
+        }
+        Files.createFile(file);
+        final AclFileAttributeView acl = Files.getFileAttributeView(file, AclFileAttributeView.class);
+        if (acl == null) {
+            throw new IOException("Can't restrict the access to " + file);
+        }
+        acl.setAcl(singletonList(AclEntry
+                .newBuilder()
+                .setType(AclEntryType.ALLOW)
+                .setPrincipal(Files.getOwner(file))
+                .setPermissions(EnumSet.allOf(AclEntryPermission.class))
+                .build()));
+    }
+
+    private void shutdown() {
+        try {
+            Files.deleteIfExists(state.toPath());
+        } catch (final IOException e) {
+            // no-op
+        }
+        try {
+            server.close();
+        } catch (final IOException e) {
+            // no-op
+        }
+    }
+
+    private static void deleteRecursively(final Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (final Stream<Path> files = Files.walk(path)) {
+            final List<Path> all = new ArrayList<>();
+            files.forEach(all::add);
+            for (int i = all.size() - 1; i >= 0; i--) {
+                Files.delete(all.get(i));
+            }
+        }
+    }
+
+    // System.out/err of the worker: the running execution output or the worker log
+    private static class Redirect extends OutputStream {
+
+        private final PrintStream console;
+
+        private volatile OutputStream target;
+
+        private Redirect(final PrintStream console) {
+            this.console = console;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            final OutputStream current = target;
+            if (current != null) {
+                current.write(b);
+            } else {
+                console.write(b);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            final OutputStream current = target;
+            if (current != null) {
+                current.flush();
+            } else {
+                console.flush();
+            }
+        }
+    }
+
+    private static class LineForwarder extends OutputStream {
+
+        private final DataOutputStream out;
+
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        private LineForwarder(final DataOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public synchronized void write(final int b) throws IOException {
+            if (b == '\n') {
+                flushLine();
+            } else if (b != '\r') {
+                line.write(b);
+            }
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            if (line.size() > 0) {
+                flushLine();
+            }
+        }
+
+        private void flushLine() throws IOException {
+            final String value = new String(line.toByteArray(), UTF_8);
+            line.reset();
+            synchronized (out) {
+                out.writeByte(OUTPUT);
+                out.writeUTF(value.length() > 16000 ? value.substring(0, 16000) : value);
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * Intercepts System.exit to get back the exit code of the run instead of stopping the worker. A SecurityManager is
+     * the only way to do it for code we don't own, it is deprecated for removal (java 24 doesn't allow to install it
+     * anymore) so the client only launches the worker up to java 23 and the usage stays confined to this class. The
+     * status is global since detect (Spring Boot) can exit from another thread than the one running main, the
+     * executions being serialized it always belongs to the running one.
+     */
+    @SuppressWarnings("removal")
+    private static class ExitTrap extends SecurityManager {
+
+        private static final AtomicReference<Integer> STATUS = new AtomicReference<>();
+
+        // an uncaught error of any thread, makes the execution fail if it doesn't exit
+        private static final AtomicReference<Throwable> ERROR = new AtomicReference<>();
+
+        private static void install() {
+            System.setSecurityManager(new ExitTrap());
+        }
+
+        @Override
+        public void checkExit(final int status) {
+            STATUS.compareAndSet(null, status);
+            throw new Exit(status);
+        }
+
+        @Override
+        public void checkPermission(final Permission perm) {
+            // no-op
+        }
+
+        @Override
+        public void checkPermission(final Permission perm, final Object context) {
+            // no-op
+        }
+
+        private static class Exit extends SecurityException {
+
+            private Exit(final int status) {
+                super("System.exit(" + status + ") intercepted by the detect worker");
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * Precompiled directory exclusions with the semantic of detect.blackduck.signature.scanner.exclusion.patterns:
+ * {@code /a/b/} matches the directories whose path, relative to the root, ends with these segments. A segment can use
+ * the {@code *} and {@code ?} wildcards. The patterns are indexed in a trie of their reversed segments so a directory
+ * is tested in a single descent whatever the number of patterns.
+ */
+class ExclusionMatcher {
+
+    private final Segment patterns = new Segment();
+
+    private boolean empty = true;
+
+    ExclusionMatcher(final Collection<String> values) {
+        values.stream().filter(Objects::nonNull).map(String::trim).forEach(this::add);
+    }
+
+    boolean isEmpty() {
+        return empty;
+    }
+
+    boolean matches(final Path root, final Path directory) {
+        if (empty) {
+            return false;
+        }
+        final Path relative = root.relativize(directory);
+        final String[] names = new String[relative.getNameCount()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = relative.getName(i).toString();
+        }
+        return names.length > 0 && !names[0].isEmpty() && matches(patterns, names, names.length - 1);
+    }
+
+    private boolean matches(final Segment segment, final String[] names, final int index) {
+        if (segment.terminal) {
+            return true;
+        }
+        if (index < 0) {
+            return false;
+        }
+        final Segment exact = segment.children.get(names[index]);
+        if (exact != null && matches(exact, names, index - 1)) {
+            return true;
+        }
+        for (final Wildcard wildcard : segment.wildcards) {
+            if (wildcard.pattern.matcher(names[index]).matches() && matches(wildcard.segment, names, index - 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void add(final String value) {
+        final List<String> names = new ArrayList<>();
+        for (final String name : value.split("/")) {
+            if (!name.isEmpty()) {
+                names.add(name);
+            }
+        }
+        if (names.isEmpty()) {
+            return;
+        }
+        Segment current = patterns;
+        for (int i = names.size() - 1; i >= 0; i--) {
+            current = current.child(names.get(i));
+        }
+        current.terminal = true;
+        empty = false;
+    }
+
+    private static class Segment {
+
+        private final Map<String, Segment> children = new HashMap<>();
+
+        private final List<Wildcard> wildcards = new ArrayList<>();
+
+        private boolean terminal;
+
+        private Segment child(final String name) {
+            if (name.indexOf('*') < 0 && name.indexOf('?') < 0) {
+                return children.computeIfAbsent(name, k -> new Segment());
+            }
+            for (final Wildcard wildcard : wildcards) {
+                if (wildcard.value.equals(name)) {
+                    return wildcard.segment;
+                }
+            }
+            final Wildcard wildcard = new Wildcard(name);
+            wildcards.add(wildcard);
+            return wildcard.segment;
+        }
+    }
+
+    private static class Wildcard {
+
+        private final String value;
+
+        private final Pattern pattern;
+
+        private final Segment segment = new Segment();
+
+        private Wildcard(final String value) {
+            this.value = value;
+            final StringBuilder regex = new StringBuilder();
+            int start = 0;
+            for (int i = 0; i < value.length(); i++) {
+                final char c = value.charAt(i);
+                if (c == '*' || c == '?') {
+                    if (i > start) {
+                        regex.append(Pattern.quote(value.substring(start, i)));
+                    }
+                    regex.append(c == '*' ? ".*" : ".");
+                    start = i + 1;
+                }
+            }
+            if (start < value.length()) {
+                regex.append(Pattern.quote(value.substring(start)));
+            }
+            this.pattern = Pattern.compile(regex.toString());
+        }
+    }
+}
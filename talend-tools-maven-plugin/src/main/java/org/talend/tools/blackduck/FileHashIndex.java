@@ -0,0 +1,316 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Persistent (path, size, modification time) to sha256 index of the fingerprinted files, so only the new and modified
+ * files are read again. The index is an open addressing table (linear probing) of fixed size slots in a direct buffer,
+ * the data stays off heap whatever the number of files. The index file is only read when opened and replaced
+ * atomically on close, it is never mapped so the replacement works on every platform. Each execution is a generation:
+ * the slots not seen by the current one are the removed files and are dropped on close. Not thread safe, callers lock
+ * the index file.
+ */
+class FileHashIndex implements AutoCloseable {
+
+    private static final int MAGIC = 0x46484958;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER = 32;
+
+    // key (2 longs), size, mtime, sha256, generation (0 = free slot)
+    private static final int SLOT = 8 + 8 + 8 + 8 + 32 + 4;
+
+    private static final int GENERATION = SLOT - 4;
+
+    private static final int MIN_CAPACITY = 1024;
+
+    // a file modified in the same timestamp granularity than its hashing can't be trusted later
+    private static final long RACY_WINDOW = TimeUnit.SECONDS.toNanos(2);
+
+    private final Path file;
+
+    private final Log log;
+
+    private final MessageDigest keyDigest = SharedCache.newSha256();
+
+    private final boolean created;
+
+    private final List<String> added = new ArrayList<>();
+
+    private final List<String> modified = new ArrayList<>();
+
+    private ByteBuffer buffer;
+
+    private int capacity;
+
+    private int size;
+
+    private int generation;
+
+    private long hits;
+
+    private FileHashIndex(final Path file, final Log log) throws IOException {
+        this.file = file;
+        this.log = log;
+        Files.createDirectories(file.getParent());
+        boolean valid = false;
+        if (Files.isRegularFile(file) && Files.size(file) >= HEADER && Files.size(file) <= Integer.MAX_VALUE) {
+            buffer = read(file);
+            capacity = buffer.getInt(8);
+            valid = buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION && Integer.bitCount(capacity) == 1
+                    && buffer.capacity() == HEADER + (long) capacity * SLOT;
+            if (!valid) {
+                log.debug("Invalid file hash index " + file + ", recreating it");
+            }
+        }
+        created = !valid;
+        if (valid) {
+            size = buffer.getInt(12);
+            generation = buffer.getInt(16) + 1;
+        } else {
+            capacity = MIN_CAPACITY;
+            buffer = create(capacity);
+            size = 0;
+            generation = 1;
+        }
+    }
+
+    static FileHashIndex open(final Path file, final Log log) throws IOException {
+        return new FileHashIndex(file, log);
+    }
+
+    /**
+     * @param relative the key of the file.
+     * @return the sha256 of the file, computed only if the file changed since it was indexed.
+     */
+    String hash(final String relative, final Path path, final BasicFileAttributes attributes) throws IOException {
+        final long[] key = key(relative);
+        final long fileSize = attributes.size();
+        final long modifiedAt = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        int slot = find(key);
+        final int offset = offset(slot);
+        if (buffer.getInt(offset + GENERATION) != 0) {
+            if (buffer.getLong(offset + 16) == fileSize && buffer.getLong(offset + 24) == modifiedAt) {
+                buffer.putInt(offset + GENERATION, generation);
+                hits++;
+                return readHash(offset + 32);
+            }
+            modified.add(relative);
+        } else {
+            added.add(relative);
+        }
+
+        final String hash = SharedCache.sha256(path);
+        if (System.currentTimeMillis() * 1_000_000L - modifiedAt < RACY_WINDOW) {
+            // may still change without a visible modification time change, keep the entry but never match it
+            if (buffer.getInt(offset + GENERATION) != 0) {
+                buffer.putLong(offset + 16, -1);
+                buffer.putInt(offset + GENERATION, generation);
+            }
+            return hash;
+        }
+        if (buffer.getInt(offset + GENERATION) == 0) {
+            if (size + 1 > capacity / 4 * 3) {
+                resize(capacity * 2, false);
+                slot = find(key);
+            }
+            size++;
+        }
+        // the hash first: an interrupted update never associates the new size and time to the previous hash
+        final int target = offset(slot);
+        writeHash(target + 32, hash);
+        buffer.putLong(target, key[0]);
+        buffer.putLong(target + 8, key[1]);
+        buffer.putLong(target + 16, fileSize);
+        buffer.putLong(target + 24, modifiedAt);
+        buffer.putInt(target + GENERATION, generation);
+        return hash;
+    }
+
+    /**
+     * @return true if there was no usable index, all the files are then new.
+     */
+    boolean isCreated() {
+        return created;
+    }
+
+    long getHits() {
+        return hits;
+    }
+
+    List<String> getAdded() {
+        return added;
+    }
+
+    List<String> getModified() {
+        return modified;
+    }
+
+    /**
+     * @return how many files indexed by the previous execution were not seen by this one.
+     */
+    int countRemoved() {
+        if (generation == 1) {
+            return 0;
+        }
+        int removed = 0;
+        for (int i = 0; i < capacity; i++) {
+            if (buffer.getInt(offset(i) + GENERATION) == generation - 1) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        int live = 0;
+        for (int i = 0; i < capacity; i++) {
+            if (buffer.getInt(offset(i) + GENERATION) == generation) {
+                live++;
+            }
+        }
+        if (live < size) { // drop the files not seen anymore
+            int target = MIN_CAPACITY;
+            while (live + 1 > target / 4 * 3) {
+                target *= 2;
+            }
+            resize(target, true);
+        }
+        writeHeader(buffer, capacity, size, generation);
+        final Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (final FileChannel channel = FileChannel.open(tmp, WRITE)) {
+                final ByteBuffer content = buffer.duplicate();
+                content.clear();
+                while (content.hasRemaining()) {
+                    channel.write(content);
+                }
+                channel.force(false);
+            }
+            SharedCache.move(tmp, file);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        log.debug(String.format("File hash index %s: %d files, %d slots", file, size, capacity));
+    }
+
+    // linear probing, returns the slot of the key or the free slot where it goes
+    private int find(final long[] key) {
+        final int mask = capacity - 1;
+        int slot = (int) (key[0] ^ (key[0] >>> 32)) & mask;
+        while (true) {
+            final int offset = offset(slot);
+            if (buffer.getInt(offset + GENERATION) == 0
+                    || buffer.getLong(offset) == key[0] && buffer.getLong(offset + 8) == key[1]) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    // rehashes the table in a new buffer
+    private void resize(final int newCapacity, final boolean currentGenerationOnly) throws IOException {
+        final ByteBuffer previous = buffer;
+        final int previousCapacity = capacity;
+        buffer = create(newCapacity);
+        capacity = newCapacity;
+        size = 0;
+        for (int i = 0; i < previousCapacity; i++) {
+            final int from = offset(i);
+            final int slotGeneration = previous.getInt(from + GENERATION);
+            if (slotGeneration == 0 || currentGenerationOnly && slotGeneration != generation) {
+                continue;
+            }
+            final int to = offset(find(new long[] { previous.getLong(from), previous.getLong(from + 8) }));
+            for (int b = 0; b < SLOT; b += 4) {
+                buffer.putInt(to + b, previous.getInt(from + b));
+            }
+            size++;
+        }
+    }
+
+    private long[] key(final String relative) {
+        keyDigest.reset();
+        final ByteBuffer digest = ByteBuffer.wrap(keyDigest.digest(relative.getBytes(UTF_8)));
+        return new long[] { digest.getLong(), digest.getLong() };
+    }
+
+    private String readHash(final int offset) {
+        final byte[] hash = new byte[32];
+        for (int i = 0; i < hash.length; i++) {
+            hash[i] = buffer.get(offset + i);
+        }
+        return SharedCache.toHex(hash);
+    }
+
+    private void writeHash(final int offset, final String hash) {
+        for (int i = 0; i < 32; i++) {
+            buffer.put(offset + i, (byte) Integer.parseInt(hash.substring(i * 2, i * 2 + 2), 16));
+        }
+    }
+
+    private static int offset(final int slot) {
+        return HEADER + slot * SLOT;
+    }
+
+    private static ByteBuffer create(final int capacity) throws IOException {
+        final long length = HEADER + (long) capacity * SLOT;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("File hash index too big: " + capacity + " slots");
+        }
+        final ByteBuffer buffer = ByteBuffer.allocateDirect((int) length);
+        writeHeader(buffer, capacity, 0, 0);
+        return buffer;
+    }
+
+    private static ByteBuffer read(final Path path) throws IOException {
+        try (final FileChannel channel = FileChannel.open(path, READ)) {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // fully read
+            }
+            buffer.clear();
+            return buffer;
+        }
+    }
+
+    private static void writeHeader(final ByteBuffer buffer, final int capacity, final int size, final int generation) {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, capacity);
+        buffer.putInt(12, size);
+        buffer.putInt(16, generation);
+    }
+}
@@ -15,54 +15,67 @@
  */
 package org.talend.tools.blackduck;
 
+import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 import static org.apache.maven.plugins.annotations.LifecyclePhase.VERIFY;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
+import org.apache.maven.RepositoryUtils;
+import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.resolver.filter.ScopeArtifactFilter;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.DefaultDependencyResolutionRequest;
+import org.apache.maven.project.DependencyResolutionException;
+import org.apache.maven.project.DependencyResolutionResult;
 import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.ProjectDependenciesResolver;
 import org.apache.maven.settings.Server;
 import org.apache.maven.shared.artifact.deploy.ArtifactDeployer;
 import org.apache.maven.shared.artifact.deploy.ArtifactDeployerException;
 import org.apache.maven.shared.utils.io.FileUtils;
-import org.apache.maven.shared.utils.io.IOUtil;
 import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.graph.DependencyFilter;
 import org.eclipse.aether.impl.ArtifactResolver;
 import org.eclipse.aether.repository.RemoteRepository;
 import org.eclipse.aether.resolution.ArtifactRequest;
 import org.eclipse.aether.resolution.ArtifactResolutionException;
 import org.eclipse.aether.resolution.ArtifactResult;
 
+import com.blackducksoftware.integration.exception.IntegrationException;
+import com.blackducksoftware.integration.hub.service.HubServicesFactory;
 import com.google.gson.GsonBuilder;
 
 /**
@@ -76,9 +89,17 @@ public class HubDetectMojo extends BlackduckBase {
     /**
      * Where the hub-detect jar will be put for the execution.
      */
-    @Parameter(property = "hub-detect.hubDetectCache", defaultValue = "${project.build.directory}/blackduck/synopsys-detect.jar")
+    @Parameter(property = "hub-detect.hubDetectCache",
+            defaultValue = "${project.build.directory}/blackduck/synopsys-detect.jar")
     private File hubDetectCache;
 
+    /**
+     * Should the user level cache (sharedCacheDirectory) be used to share hub-detect and scan-cli binaries between
+     * projects and builds, the modules then link to the shared binaries instead of owning a copy.
+     */
+    @Parameter(property = "hub-detect.useSharedCache", defaultValue = "false")
+    private boolean useSharedCache;
+
     /**
      * Where the scan-cli binary will be put for the execution.
      */
@@ -92,12 +113,33 @@ public class HubDetectMojo extends BlackduckBase {
     private String artifactoryBase;
 
     /**
-     * What is the query used to get the last version of hub-detect. Passed variables are the repository base, group, artifact and
+     * What is the query used to get the last version of hub-detect. Passed variables are the repository base, group,
+     * artifact and
      * repo.
      */
-    @Parameter(property = "hub-detect.latestVersionUrl", defaultValue = "%s/api/search/latestVersion?g=%s&a=%s&repos=%s")
+    @Parameter(property = "hub-detect.latestVersionUrl",
+            defaultValue = "%s/api/search/latestVersion?g=%s&a=%s&repos=%s")
     private String latestVersionUrl;
 
+    /**
+     * How long (in seconds) a resolved "latest" version is reused without asking artifactory. Once expired the cached
+     * version is still used but refreshed in background. 0 disables the cache.
+     */
+    @Parameter(property = "hub-detect.latestVersionCacheTtl", defaultValue = "86400")
+    private long latestVersionCacheTtl;
+
+    /**
+     * Connect timeout (ms) of the "latest" version lookup.
+     */
+    @Parameter(property = "hub-detect.latestVersionConnectTimeout", defaultValue = "10000")
+    private int latestVersionConnectTimeout;
+
+    /**
+     * Read timeout (ms) of the "latest" version lookup.
+     */
+    @Parameter(property = "hub-detect.latestVersionReadTimeout", defaultValue = "30000")
+    private int latestVersionReadTimeout;
+
     /**
      * The jar coordinates. You can use it to fix the version of hub-detect.
      * Before it was com.blackducksoftware.integration:hub-detect:5.2.0
@@ -108,9 +150,36 @@ public class HubDetectMojo extends BlackduckBase {
     /**
      * The scan cli (cache) coordinates.
      */
-    @Parameter(property = "hub-detect.scanCliDownloadUrl", defaultValue = "https://blackduck.talend.com/download/scan.cli.zip")
+    @Parameter(property = "hub-detect.scanCliDownloadUrl",
+            defaultValue = "https://blackduck.talend.com/download/scan.cli.zip")
     private String scanCliDownloadUrl;
 
+    /**
+     * How many parallel HTTP range requests are used to download scan cli when the server supports it.
+     */
+    @Parameter(property = "hub-detect.scanCliDownloadThreads", defaultValue = "4")
+    private int scanCliDownloadThreads;
+
+    /**
+     * The size in bytes of the chunks scan cli is split in for a parallel (and resumable) download.
+     */
+    @Parameter(property = "hub-detect.scanCliDownloadChunkSize", defaultValue = "8388608")
+    private long scanCliDownloadChunkSize;
+
+    /**
+     * When scan cli is downloaded, extract it while it is downloaded (and write the cache in the same pass) instead of
+     * downloading, copying and then exploding it. Note that it disables the parallel download.
+     */
+    @Parameter(property = "hub-detect.scanCliStreamingExtraction", defaultValue = "false")
+    private boolean scanCliStreamingExtraction;
+
+    /**
+     * How many threads are used to explode scan cli, 0 means the number of available processors and 1 a sequential
+     * extraction.
+     */
+    @Parameter(property = "hub-detect.unzipThreads", defaultValue = "0")
+    private int unzipThreads;
+
     /**
      * Should scan cli be used offline.
      */
@@ -124,7 +193,7 @@ public class HubDetectMojo extends BlackduckBase {
     private String scanCliGav;
 
     /**
-     * Allows to force to redownload scancli.
+     * Allows to force to redownload scancli, the shared cache entry is then refreshed with the download.
      */
     @Parameter(property = "hub-detect.forceScanCliDownload", defaultValue = "false")
     private boolean forceScanCliDownload;
@@ -141,6 +210,25 @@ public class HubDetectMojo extends BlackduckBase {
     @Parameter(property = "hub-detect.logLevel", defaultValue = "INFO")
     private String logLevel;
 
+    /**
+     * The minimum level of the hub-detect output lines forwarded to the maven log (DEBUG, INFO, WARN or ERROR). The
+     * whole output is always written to target/blackduck/hub-detect.log of the root project.
+     */
+    @Parameter(property = "hub-detect.consoleLevel", defaultValue = "INFO")
+    private String consoleLevel;
+
+    /**
+     * The size (in bytes) after which the hub-detect log file is rotated, 0 to disable the rotation.
+     */
+    @Parameter(property = "hub-detect.outputLogMaxSize", defaultValue = "10485760")
+    private long outputLogMaxSize;
+
+    /**
+     * How many hub-detect log files are kept (the current one included).
+     */
+    @Parameter(property = "hub-detect.outputLogFiles", defaultValue = "5")
+    private int outputLogFiles;
+
     /**
      * Should the exit code of hub-detect be validated. Can be true or any int. If true, 0 will be tested otherwise
      * the passed value. Any other value will be considered as no validation to execute.
@@ -154,6 +242,110 @@ public class HubDetectMojo extends BlackduckBase {
     @Parameter(property = "hub-detect.scope", defaultValue = "runtime")
     private String scope;
 
+    /**
+     * Should a class data sharing archive of hub-detect be created on the first execution and used by the next ones
+     * to start the forked JVM faster. Requires java 13 or later and is ignored if jvmOptions already configure it.
+     */
+    @Parameter(property = "hub-detect.classDataSharing", defaultValue = "true")
+    private boolean classDataSharing;
+
+    /**
+     * Should the executions be handed to a long running (warm) hub-detect worker instead of forking a JVM each time.
+     * The worker is shared by the modules and builds of the machine using the same jar and JVM options. Ignored when
+     * environment variables are set since they can't be applied to an already running JVM, and on java 24 or later
+     * (the worker intercepts System.exit with a SecurityManager which can't be installed anymore). The configuration
+     * is passed as arguments, systemVariables included. If the worker can't be started, hub-detect is forked.
+     */
+    @Parameter(property = "hub-detect.daemon", defaultValue = "false")
+    private boolean daemon;
+
+    @Parameter(defaultValue = "${plugin.version}", readonly = true)
+    private String pluginVersion;
+
+    /**
+     * How long (in seconds) the hub-detect worker stays alive without any execution.
+     */
+    @Parameter(property = "hub-detect.daemonIdleTimeout", defaultValue = "1800")
+    private long daemonIdleTimeout;
+
+    /**
+     * In how many hub-detect executions the signature scan of the reactor is split, each one scanning a group of top
+     * level module directories as its own code location of the same project version. 0 or 1 disables the sharding,
+     * requires hub-detect 5 or later.
+     */
+    @Parameter(property = "hub-detect.shards", defaultValue = "0")
+    private int shards;
+
+    /**
+     * How many shards are scanned at the same time.
+     */
+    @Parameter(property = "hub-detect.shardConcurrency", defaultValue = "2")
+    private int shardConcurrency;
+
+    /**
+     * Should the sources be walked by the plugin (in parallel, without entering the excluded directories) to give
+     * hub-detect the minimal list of paths to scan instead of the whole root directory. Requires hub-detect 5 or later
+     * and is ignored if the signature scanner paths are configured.
+     */
+    @Parameter(property = "hub-detect.scanManifest", defaultValue = "false")
+    private boolean scanManifest;
+
+    /**
+     * The exclusion patterns added when the scan manifest is used, content which is never scanned. The build
+     * directories of the reactor are always excluded (by path, not by name).
+     */
+    @Parameter(property = "hub-detect.scanManifestExclusions",
+            defaultValue = "/node_modules/,/bower_components/,/.git/")
+    private String scanManifestExclusions;
+
+    /**
+     * The maximum number of directories of the scan manifest, hub-detect runs a scan and creates a code location per
+     * path. Over it the deepest directories are scanned as a whole, with the exclusion patterns.
+     */
+    @Parameter(property = "hub-detect.scanManifestMaxPaths", defaultValue = "5")
+    private int scanManifestMaxPaths;
+
+    /**
+     * Should the signature scanner read a mirror of the files the build ships (poms, declared sources and resources,
+     * artifacts) instead of the project directory. The mirror is made of hard links, in target/blackduck/staging of
+     * the root project. Requires hub-detect 5 or later and is ignored if the signature scanner paths are configured.
+     */
+    @Parameter(property = "hub-detect.scanStaging", defaultValue = "false")
+    private boolean scanStaging;
+
+    /**
+     * Should the execution be skipped when the resolved dependencies of the reactor (for the configured scope), the
+     * sources (minus the exclusions and build directories) and the configuration didn't change since the last
+     * successful execution. The fingerprint is stored in detect.output.path. The reactor dependencies are only resolved
+     * when this mode or the dependency graph export is enabled.
+     */
+    @Parameter(property = "hub-detect.incremental", defaultValue = "false")
+    private boolean incremental;
+
+    /**
+     * Should the incremental mode keep the hashes of the source files in an index (file-hashes.index in
+     * detect.output.path) to only read the new and modified files. The changes since the previous fingerprint are
+     * listed in changed-files.txt next to it.
+     */
+    @Parameter(property = "hub-detect.fileHashIndex", defaultValue = "true")
+    private boolean fileHashIndex;
+
+    /**
+     * Should the dependency graph resolved by the plugin be uploaded to blackduck (as BDIO) instead of letting
+     * hub-detect relaunch maven to compute it. The maven detector of hub-detect is then disabled and
+     * detect.project.version.name defaults to the project version so the graph and the scans use the same version.
+     */
+    @Parameter(property = "hub-detect.exportDependencyGraph", defaultValue = "false")
+    private boolean exportDependencyGraph;
+
+    /**
+     * Should hub-detect run in background while the rest of the build continues. The execution is joined (and its
+     * failure reported) at the end of the build, it requires the plugin to be declared with
+     * {@code <extensions>true</extensions>} otherwise the execution stays synchronous.
+     */
+    @Parameter(property = "hub-detect.async", defaultValue = "false")
+    private boolean async;
+
     /**
      * Let you add system properties on hub-detect execution.
      */
@@ -188,6 +380,9 @@ public class HubDetectMojo extends BlackduckBase {
     @Component
     private ArtifactResolver resolver;
 
+    @Component
+    private ProjectDependenciesResolver dependenciesResolver;
+
     @Component
     private ArtifactDeployer deployer;
 
@@ -200,13 +395,16 @@ public class HubDetectMojo extends BlackduckBase {
             return;
         }
 
-        final List<RemoteRepository> repositories = new ArrayList<>(rootProject.getRemoteProjectRepositories().size() + 1);
+        final List<RemoteRepository> repositories =
+                new ArrayList<>(rootProject.getRemoteProjectRepositories().size() + 1);
         repositories.add(new RemoteRepository.Builder("blackduck_" + getClass().getName(), "default",
                 artifactoryBase + '/' + artifactRepositoryName).build());
         repositories.addAll(rootProject.getRemoteProjectRepositories());
 
         final String hubDetectVersion;
+        final SharedCache cache = useSharedCache ? new SharedCache(sharedCacheDirectory, getLog()) : null;
         File jar = null;
+        Path cachedDetectJar = null;
         {
             String[] gav = executableGav.split(":");
             if (!hubDetectCache.exists()) {
@@ -214,83 +412,148 @@ public class HubDetectMojo extends BlackduckBase {
 
                 hubDetectCache.getParentFile().mkdirs();
 
-                for (int i = 0; i < 2; i++) {
-                    if (i == 1) {
-                        getLog().info("Using old blackduck hub-detect gav cause " + executableGav + " was not found");
-                        gav = OLD_HUB_DETECT.split(":"); // old gav
-                    }
-                    try {
-                        final ArtifactResult artifactResult = resolver.resolveArtifact(session.getRepositorySession(),
-                                new ArtifactRequest(new DefaultArtifact(gav[0], gav[1], "jar", hubDetectVersion), repositories,
-                                        null));
-                        if (artifactResult.isMissing() && i == 1) {
-                            throw new IllegalStateException(String.format("Didn't find '%s'", executableGav));
-                        }
-                        jar = artifactResult.getArtifact().getFile();
-                        break;
-                    } catch (final ArtifactResolutionException e) {
+                final Path cachedJar = findInCache(cache, gav[1], hubDetectVersion, hubDetectCache.getName(), false);
+                if (cachedJar != null) {
+                    getLog().debug(String.format("Using cached '%s'", cachedJar));
+                    jar = cachedJar.toFile();
+                } else {
+                    for (int i = 0; i < 2; i++) {
                         if (i == 1) {
-                            throw new IllegalStateException(String.format("Didn't find '%s'", executableGav), e);
+                            getLog().info(
+                                    "Using old blackduck hub-detect gav cause " + executableGav + " was not found");
+                            gav = OLD_HUB_DETECT.split(":"); // old gav
+                        }
+                        final BuildMetrics.Timer timer = metrics().time("artifact.resolve");
+                        try {
+                            final ArtifactResult artifactResult =
+                                    resolver.resolveArtifact(session.getRepositorySession(),
+                                            new ArtifactRequest(
+                                                    new DefaultArtifact(gav[0], gav[1], "jar", hubDetectVersion),
+                                                    repositories, null));
+                            if (artifactResult.isMissing() && i == 1) {
+                                throw new IllegalStateException(String.format("Didn't find '%s'", executableGav));
+                            }
+                            jar = artifactResult.getArtifact().getFile();
+                            break;
+                        } catch (final ArtifactResolutionException e) {
+                            if (i == 1) {
+                                throw new IllegalStateException(String.format("Didn't find '%s'", executableGav), e);
+                            }
+                        } finally {
+                            timer.stop();
                         }
                     }
                 }
                 try {
-                    FileUtils.copyFile(jar, hubDetectCache);
+                    if (cache != null) {
+                        cachedDetectJar = cachedJar != null ? cachedJar
+                                : cache.storeFile(gav[1], hubDetectVersion, jar, hubDetectCache.getName());
+                        cache.linkFile(cachedDetectJar, hubDetectCache);
+                    } else {
+                        FileUtils.copyFile(jar, hubDetectCache);
+                    }
                 } catch (final IOException e) {
                     throw new IllegalStateException(e);
                 }
             } else {
                 hubDetectVersion = getHubDetectVersion(gav);
+                cachedDetectJar = findInCache(cache, gav[1], hubDetectVersion, hubDetectCache.getName(), false);
             }
         }
 
-        final File explodedScanCli;
+        File explodedScanCli;
         if (scanCliOffline) {
             final String[] gav = scanCliGav.split(":");
-            if (!scanCliCache.exists()) {
-                boolean downloaded = false;
-                File scanCliZip;
-                if (forceScanCliDownload) {
-                    downloaded = true;
-                    scanCliZip = downloadScanCli(rootProject);
-                } else {
-                    try {
-                        final ArtifactResult artifactResult = resolver.resolveArtifact(session.getRepositorySession(),
-                                new ArtifactRequest(new DefaultArtifact(gav[0], gav[1], "zip", hubDetectVersion), emptyList(),
-                                        null));
-                        if (artifactResult.isMissing()) {
+            explodedScanCli = new File(rootProject.getBuild().getDirectory(),
+                    "blackduck/" + getClass().getSimpleName() + "_scancli");
+            // a forced download must not reuse (nor write through the link into) the cached scan cli
+            final Path cachedScanCli =
+                    forceScanCliDownload ? null : findInCache(cache, gav[1], hubDetectVersion, "exploded", true);
+            if (forceScanCliDownload) {
+                try {
+                    if (Files.isSymbolicLink(explodedScanCli.toPath())) {
+                        Files.delete(explodedScanCli.toPath());
+                    } else {
+                        FileUtils.deleteDirectory(explodedScanCli);
+                    }
+                } catch (final IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            if (cachedScanCli != null) {
+                getLog().debug(String.format("Using cached '%s'", cachedScanCli));
+                explodedScanCli = linkDirectory(cache, cachedScanCli, explodedScanCli);
+            } else {
+                if (forceScanCliDownload || !scanCliCache.exists()) {
+                    boolean downloaded = false;
+                    File scanCliZip;
+                    if (forceScanCliDownload) {
+                        downloaded = true;
+                        scanCliZip = downloadScanCli(rootProject, explodedScanCli);
+                    } else {
+                        final BuildMetrics.Timer timer = metrics().time("artifact.resolve");
+                        ArtifactResult artifactResult;
+                        try {
+                            artifactResult = resolver.resolveArtifact(session.getRepositorySession(),
+                                    new ArtifactRequest(new DefaultArtifact(gav[0], gav[1], "zip", hubDetectVersion),
+                                            emptyList(), null));
+                        } catch (final ArtifactResolutionException e) {
+                            artifactResult = null;
+                        } finally {
+                            timer.stop();
+                        }
+                        if (artifactResult == null || artifactResult.isMissing()) {
                             downloaded = true;
-                            scanCliZip = downloadScanCli(rootProject);
+                            scanCliZip = downloadScanCli(rootProject, explodedScanCli);
                         } else {
                             scanCliZip = artifactResult.getArtifact().getFile();
                         }
-                    } catch (final ArtifactResolutionException e) {
-                        scanCliZip = downloadScanCli(rootProject);
-                        downloaded = true;
+                    }
+                    if (downloaded) {
+                        try {
+                            final org.apache.maven.artifact.DefaultArtifact artifact =
+                                    new org.apache.maven.artifact.DefaultArtifact(gav[0], gav[1], hubDetectVersion,
+                                            "compile", "zip", null, new DefaultArtifactHandler("zip"));
+                            artifact.setFile(scanCliZip);
+                            deployer.deploy(session.getProjectBuildingRequest(), session.getLocalRepository(),
+                                    singletonList(artifact));
+                        } catch (final ArtifactDeployerException e) {
+                            throw new MojoExecutionException(e.getMessage(), e);
+                        }
+                    }
+                    if (!scanCliZip.equals(scanCliCache)) { // in streaming mode the download is already the cache
+                        try {
+                            FileUtils.copyFile(scanCliZip, scanCliCache);
+                        } catch (final IOException e) {
+                            throw new IllegalStateException(e);
+                        }
                     }
                 }
-                if (downloaded) {
+
+                if (cache != null) {
+                    final File alreadyExploded = explodedScanCli;
                     try {
-                        final org.apache.maven.artifact.DefaultArtifact artifact = new org.apache.maven.artifact.DefaultArtifact(
-                                gav[0], gav[1], hubDetectVersion, "compile", "zip", null, new DefaultArtifactHandler("zip"));
-                        artifact.setFile(scanCliZip);
-                        deployer.deploy(session.getProjectBuildingRequest(), session.getLocalRepository(),
-                                singletonList(artifact));
-                    } catch (final ArtifactDeployerException e) {
-                        throw new MojoExecutionException(e.getMessage(), e);
+                        cache.storeFile(gav[1], hubDetectVersion, scanCliCache, "scan-cli.zip");
+                        final Path exploded = cache.storeDirectory(gav[1], hubDetectVersion, "exploded",
+                                forceScanCliDownload, dir -> {
+                                    if (alreadyExploded.isDirectory()
+                                            && !Files.isSymbolicLink(alreadyExploded.toPath())) {
+                                        try { // streaming mode already exploded it
+                                            Files.move(alreadyExploded.toPath(), dir);
+                                        } catch (final IOException ioe) { // other filesystem
+                                            FileUtils.copyDirectoryStructure(alreadyExploded, dir.toFile());
+                                        }
+                                    } else {
+                                        unzip(scanCliCache, dir.toFile(), true);
+                                    }
+                                });
+                        explodedScanCli = linkDirectory(cache, exploded, explodedScanCli);
+                    } catch (final IOException e) {
+                        throw new IllegalStateException(e);
                     }
+                } else if (!explodedScanCli.exists()) {
+                    unzip(scanCliCache, explodedScanCli, true);
                 }
-                try {
-                    FileUtils.copyFile(scanCliZip, scanCliCache);
-                } catch (final IOException e) {
-                    throw new IllegalStateException(e);
-                }
-            }
-
-            explodedScanCli = new File(rootProject.getBuild().getDirectory(),
-                    "blackduck/" + getClass().getSimpleName() + "_scancli");
-            if (!explodedScanCli.exists()) {
-                unzip(scanCliCache, explodedScanCli, true);
             }
         } else {
             explodedScanCli = null;
@@ -299,20 +562,9 @@ public class HubDetectMojo extends BlackduckBase {
         final boolean useArgs = shouldUseArgs(hubDetectVersion);
         final String rootPath = rootProject.getBasedir().getAbsolutePath();
         final File java = new File(System.getProperty("java.home"), "bin/java");
-        final List<String> command = new ArrayList<>();
-        command.add(java.getAbsolutePath());
-        if (jvmOptions != null) {
-            command.addAll(jvmOptions);
-        }
+        final Map<String, String> systemProperties = new HashMap<>();
         if (systemVariables != null && !useArgs) {
-            command.addAll(systemVariables.entrySet().stream()
-                    .map(e -> String.format("-D%s=%s", e.getKey(), handlePlaceholders(rootPath, e.getValue())))
-                    .collect(toList()));
-        }
-        final ProcessBuilder processBuilder = new ProcessBuilder().inheritIO().command(command);
-        final Map<String, String> environment = processBuilder.environment();
-        if (this.environment != null) {
-            environment.putAll(this.environment);
+            systemVariables.forEach((k, v) -> systemProperties.put(k, handlePlaceholders(rootPath, v)));
         }
         final Map<String, String> config = new HashMap<>();
         // https://blackducksoftware.atlassian.net/wiki/spaces/INTDOCS/pages/68878339/Hub+Detect+Properties
@@ -329,49 +581,165 @@ public class HubDetectMojo extends BlackduckBase {
             config.put("detect.hub.signature.scanner.offline.local.path", explodedScanCli.getAbsolutePath());
         }
         if (systemVariables == null || !systemVariables.containsKey("detect.output.path")) {
-            config.put("detect.output.path", new File(rootProject.getBuild().getDirectory(), "blackduck").getAbsolutePath());
+            config.put("detect.output.path",
+                    new File(rootProject.getBuild().getDirectory(), "blackduck").getAbsolutePath());
         }
         final String enforcedExcluded = "/blackduck/";
         if (exclusions != null) {
             config.put("detect.hub.signature.scanner.exclusion.patterns",
-                    Stream.concat(Stream.of(enforcedExcluded), exclusions.stream().filter(Objects::nonNull).map(String::trim))
+                    Stream
+                            .concat(Stream.of(enforcedExcluded),
+                                    exclusions.stream().filter(Objects::nonNull).map(String::trim))
                             .collect(joining(",")));
         } else {
             config.put("detect.hub.signature.scanner.exclusion.patterns", "/blackduck/");
         }
+        if (exportDependencyGraph) {
+            config.put("detect.excluded.bom.tool.types", "MAVEN"); // hub-detect < 6
+            config.put("detect.excluded.detector.types", "MAVEN");
+        }
         if (systemVariables != null && useArgs) {
             config.putAll(systemVariables);
         }
+        final String graphVersion =
+                exportDependencyGraph ? pinProjectVersionName(rootProject, config, systemProperties) : null;
 
-        if (!useArgs) {
-            environment.put("SPRING_APPLICATION_JSON", new GsonBuilder().create().toJson(config));
+        final boolean useStaging = scanStaging && canSetScannerPaths("The scan staging", useArgs, config);
+        final boolean useManifest =
+                !useStaging && scanManifest && canSetScannerPaths("The scan manifest", useArgs, config);
+        if (useManifest) {
+            config.put("detect.hub.signature.scanner.exclusion.patterns",
+                    config.get("detect.hub.signature.scanner.exclusion.patterns") + ',' + scanManifestExclusions);
         }
-        command.add("-jar");
-        command.add(hubDetectCache.getAbsolutePath());
-        if (args != null) {
-            command.addAll(args);
+        final List<List<File>> shardDirectories = shards > 1 ? findShards(rootProject, useArgs) : null;
+        // the mirrors are only listed here, they are created by the execution once it is not skipped
+        final List<ScanStaging> stagings = new ArrayList<>();
+        if ((useStaging || useManifest) && shardDirectories == null) {
+            final List<File> directories = singletonList(rootProject.getBasedir());
+            final String paths;
+            if (useStaging) {
+                final ScanStaging staging = prepareStaging(rootProject, config, directories,
+                        new File(rootProject.getBuild().getDirectory(), "blackduck/staging"));
+                if (staging != null) {
+                    stagings.add(staging);
+                }
+                paths = staging != null ? staging.getMirror().toString() : null;
+            } else {
+                paths = createScanManifest(rootProject, config, directories);
+            }
+            if (paths != null) {
+                config.put("detect.hub.signature.scanner.paths", paths);
+            }
         }
-        if (useArgs) {
-            command.addAll(config.entrySet().stream()
-                    .map(it -> "--"
-                            + it.getKey().replace("blackduck.hub.", "blackduck.").replace("detect.hub.", "detect.blackduck.")
-                            + "=" + it.getValue())
-                    .collect(toList()));
+        final List<String> detectArgs = toDetectArgs(config, useArgs);
+        final List<List<String>> shardArgs = shardDirectories != null
+                ? createShardArgs(rootProject, rootPath, config, shardDirectories, useStaging, useManifest, stagings)
+                : null;
+
+        // resolved on demand, most executions don't need the dependencies
+        final Map<MavenProject, Set<Artifact>> dependencies =
+                incremental || exportDependencyGraph ? resolveDependencies() : null;
+        final ScanFingerprint fingerprint;
+        if (incremental) {
+            final File outputPath =
+                    new File(systemVariables != null && systemVariables.containsKey("detect.output.path")
+                            ? handlePlaceholders(rootPath, systemVariables.get("detect.output.path"))
+                            : config.get("detect.output.path"));
+            final Map<String, String> fingerprintedConfig = new HashMap<>(config);
+            fingerprintedConfig.remove("blackduck.hub.password");
+            fingerprintedConfig.remove("detect.hub.signature.scanner.offline.local.path");
+            fingerprintedConfig.put("hub-detect.version", hubDetectVersion);
+            if (shardDirectories != null) {
+                fingerprintedConfig.put("hub-detect.shards", Integer.toString(shardDirectories.size()));
+            }
+            final BuildMetrics.Timer timer = metrics().time("fingerprint");
+            try {
+                fingerprint = ScanFingerprint.compute(outputPath, rootProject, dependencies, scope,
+                        asList(config.get("detect.hub.signature.scanner.exclusion.patterns").split(",")),
+                        fingerprintedConfig,
+                        detectArgs.stream().filter(it -> !it.startsWith("--blackduck.password=")).collect(toList()),
+                        fileHashIndex, metrics(), getLog());
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                timer.stop();
+            }
+            final Properties previous = fingerprint.findPreviousExecution();
+            metrics().cache("incremental", previous != null);
+            if (previous != null) {
+                getLog().info(String.format(
+                        "Nothing changed since the last successful hub-detect execution (%s, exit status %s), skipping",
+                        new Date(Long.parseLong(previous.getProperty("timestamp", "0"))),
+                        previous.getProperty("exitStatus")));
+                return;
+            }
+        } else {
+            fingerprint = null;
         }
-        getLog().info("Launching: " + processBuilder.command());
 
-        final int exitStatus;
-        try {
-            exitStatus = processBuilder.start().waitFor();
-        } catch (final InterruptedException e) {
-            Thread.currentThread().interrupt();
-            getLog().error(e);
-            throw new IllegalStateException(e);
-        } catch (final IOException e) {
-            getLog().error(e);
-            throw new IllegalStateException(e);
+        if (exportDependencyGraph) {
+            uploadDependencyGraph(rootProject, server, graphVersion, dependencies,
+                    new File(rootProject.getBuild().getDirectory(),
+                            "blackduck/" + getClass().getSimpleName() + "/maven_graph_bdio.jsonld"));
         }
 
+        // the archive is bound to the classpath so use the shared jar (not the per project link) when possible
+        final File launchedJar = cachedDetectJar != null ? cachedDetectJar.toFile() : hubDetectCache;
+        final File outputLog = new File(rootProject.getBuild().getDirectory(), "blackduck/hub-detect.log");
+        final String scannedVersion = graphVersion != null ? graphVersion
+                : Optional.ofNullable(explicitProjectVersionName(systemProperties)).orElseGet(
+                        () -> config.getOrDefault("detect.project.version.name", rootProject.getVersion()));
+        final Runnable execution = () -> {
+            stagings.forEach(this::stage);
+            final int exitStatus;
+            final boolean hasEnvironment = this.environment != null && !this.environment.isEmpty();
+            if (shardArgs != null) {
+                if (daemon) {
+                    getLog().warn("Sharded scans can't use the hub-detect worker, forking a JVM per shard");
+                }
+                exitStatus = executeShards(java, launchedJar, systemProperties, config, shardArgs, outputLog);
+            } else {
+                Integer workerExitStatus = null;
+                if (daemon && hasEnvironment) {
+                    getLog().warn("environment is set, can't use the hub-detect worker, forking a JVM");
+                } else if (daemon && !DetectDaemonClient.isSupported()) {
+                    getLog().warn(String.format("The hub-detect worker can't run on java %d, forking a JVM",
+                            DetectDaemonClient.javaVersion()));
+                } else if (daemon) {
+                    // same as SPRING_APPLICATION_JSON but scoped to the execution
+                    final String applicationJson = useArgs ? null : new GsonBuilder().create().toJson(config);
+                    workerExitStatus = executeInWorker(java, launchedJar, systemProperties, applicationJson, detectArgs,
+                            outputLog);
+                }
+                exitStatus = workerExitStatus != null ? workerExitStatus
+                        : fork(java, launchedJar, systemProperties, config, useArgs, detectArgs, outputLog);
+            }
+
+            validateExitStatus(exitStatus, fingerprint);
+            if (exitStatus == 0) {
+                markVersionFound(scannedVersion);
+            }
+        };
+        if (async) {
+            if (HubDetectSessionParticipant.isActive(session)) {
+                HubDetectSessionParticipant.submit(session, "hub-detect " + blackduckName, () -> {
+                    try {
+                        execution.run();
+                    } finally { // the mojo already exported the metrics without this execution
+                        writeMetrics(rootProject);
+                    }
+                }, getLog());
+                getLog().info(
+                        "hub-detect execution started in background, it will be joined when the last module ends");
+                return;
+            }
+            getLog().warn("async mode requires the plugin to be declared with <extensions>true</extensions>,"
+                    + " executing hub-detect synchronously");
+        }
+        execution.run();
+    }
+
+    private void validateExitStatus(final int exitStatus, final ScanFingerprint fingerprint) {
         getLog().info(String.format("Output: %d", exitStatus));
 
         int expectedExitCode;
@@ -381,12 +749,431 @@ public class HubDetectMojo extends BlackduckBase {
             if (Boolean.parseBoolean(validateExitCode)) {
                 expectedExitCode = 0;
             } else {
+                if (fingerprint != null && exitStatus == 0) {
+                    fingerprint.store(exitStatus);
+                }
                 return;
             }
         }
         if (exitStatus != expectedExitCode) {
             throw new IllegalStateException(String.format("Invalid exit status: %d", exitStatus));
         }
+        if (fingerprint != null) {
+            fingerprint.store(exitStatus);
+        }
+    }
+
+    private int fork(final File java, final File launchedJar, final Map<String, String> systemProperties,
+            final Map<String, String> config, final boolean useArgs, final List<String> detectArgs,
+            final File outputLog) {
+        final List<String> command = new ArrayList<>();
+        command.add(java.getAbsolutePath());
+        if (jvmOptions != null) {
+            command.addAll(jvmOptions);
+        }
+        final ClassDataSharingArchive cdsArchive;
+        if (classDataSharing && ClassDataSharingArchive.isSupported()
+                && !ClassDataSharingArchive.isConfigured(jvmOptions)) {
+            cdsArchive = new ClassDataSharingArchive(launchedJar.toPath(), getLog());
+            command.add(cdsArchive.prepare());
+        } else {
+            cdsArchive = null;
+        }
+        command.addAll(systemProperties
+                .entrySet()
+                .stream()
+                .map(e -> String.format("-D%s=%s", e.getKey(), e.getValue()))
+                .collect(toList()));
+        final ProcessBuilder processBuilder =
+                new ProcessBuilder().redirectInput(ProcessBuilder.Redirect.INHERIT).command(command);
+        final Map<String, String> environment = processBuilder.environment();
+        if (this.environment != null && !this.environment.isEmpty()) {
+            environment.putAll(this.environment);
+        }
+        if (!useArgs) {
+            environment.put("SPRING_APPLICATION_JSON", new GsonBuilder().create().toJson(config));
+        }
+        command.add("-jar");
+        command.add(launchedJar.getAbsolutePath());
+        command.addAll(detectArgs);
+        getLog().info("Launching: " + processBuilder.command());
+
+        try (final DetectOutput output = newDetectOutput(outputLog)) {
+            final Process process;
+            final BuildMetrics.Timer startTimer = metrics().time("process.start");
+            try {
+                process = processBuilder.start();
+            } finally {
+                startTimer.stop();
+            }
+            output.pump(process);
+            final int exitStatus;
+            final BuildMetrics.Timer waitTimer = metrics().time("process.wait");
+            try {
+                exitStatus = process.waitFor();
+            } catch (final InterruptedException e) {
+                process.destroyForcibly(); // else the output readers never end
+                throw e;
+            } finally {
+                waitTimer.stop();
+            }
+            if (cdsArchive != null) {
+                cdsArchive.onExit();
+            }
+            return exitStatus;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            getLog().error(e);
+            throw new IllegalStateException(e);
+        } catch (final IOException e) {
+            getLog().error(e);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int executeShards(final File java, final File launchedJar, final Map<String, String> systemProperties,
+            final Map<String, String> config, final List<List<String>> shardArgs, final File outputLog) {
+        final ExecutorService pool =
+                Executors.newFixedThreadPool(Math.max(1, Math.min(shardConcurrency, shardArgs.size())), r -> {
+                    final Thread thread = new Thread(r, "hub-detect-shard");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        final Map<Future<Integer>, Integer> executions = new HashMap<>();
+        final BuildMetrics.Timer timer = metrics().time("shards.execute");
+        try {
+            final CompletionService<Integer> completion = new ExecutorCompletionService<>(pool);
+            for (int i = 0; i < shardArgs.size(); i++) {
+                final List<String> detectArgs = shardArgs.get(i);
+                final File shardLog = new File(outputLog.getParentFile(), "hub-detect-shard-" + (i + 1) + ".log");
+                executions.put(
+                        completion.submit(
+                                () -> fork(java, launchedJar, systemProperties, config, true, detectArgs, shardLog)),
+                        i + 1);
+            }
+            for (int done = 1; done <= executions.size(); done++) {
+                final Future<Integer> execution = completion.take();
+                final int exitStatus = execution.get();
+                getLog().info(String.format("hub-detect shard %d/%d exited with %d", executions.get(execution),
+                        executions.size(), exitStatus));
+                if (exitStatus != 0) {
+                    if (done < executions.size()) {
+                        getLog().warn(String.format("Stopping the %d other shards", executions.size() - done));
+                    }
+                    return exitStatus;
+                }
+            }
+            return 0;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            throw RuntimeException.class.isInstance(cause) ? RuntimeException.class.cast(cause)
+                    : new IllegalStateException(cause);
+        } finally {
+            timer.stop();
+            // a failed shard stops the others, the interrupted forks destroy their process
+            executions.keySet().forEach(it -> it.cancel(true));
+            pool.shutdownNow();
+        }
+    }
+
+    private List<List<File>> findShards(final MavenProject rootProject, final boolean useArgs) {
+        if (!useArgs) {
+            getLog().warn("Sharded scans require hub-detect 5 or later, running a single scan");
+            return null;
+        }
+        final List<List<File>> shardDirectories = ScanShards.partition(rootProject, reactorProjects, shards);
+        if (shardDirectories.size() < 2) {
+            getLog().info("The reactor can't be split in several shards, running a single scan");
+            return null;
+        }
+        getLog().info(
+                String.format("Scanning the reactor in %d shards: %s", shardDirectories.size(), shardDirectories));
+        final List<Path> unscanned = ScanShards.findUnscanned(rootProject, shardDirectories);
+        if (!unscanned.isEmpty()) {
+            getLog().warn(
+                    String.format("%d entries of the reactor root are in no shard and won't be signature scanned, "
+                            + "move them in a module or run without shards: %s", unscanned.size(), unscanned));
+        }
+        return shardDirectories;
+    }
+
+    // each shard is a code location of the same project version so blackduck merges them in a single BOM
+    private List<List<String>> createShardArgs(final MavenProject rootProject, final String rootPath,
+            final Map<String, String> config, final List<List<File>> shardDirectories, final boolean useStaging,
+            final boolean useManifest, final List<ScanStaging> stagings) {
+        final List<List<String>> shardArgs = new ArrayList<>(shardDirectories.size());
+        for (int i = 0; i < shardDirectories.size(); i++) {
+            final String shard = "shard-" + (i + 1);
+            final Map<String, String> shardConfig = new HashMap<>(config);
+            shardConfig.putIfAbsent("detect.project.version.name", rootProject.getVersion());
+            final String paths;
+            if (useStaging) {
+                final ScanStaging staging = prepareStaging(rootProject, config, shardDirectories.get(i),
+                        new File(rootProject.getBuild().getDirectory(), "blackduck/staging/" + shard));
+                if (staging != null) {
+                    stagings.add(staging);
+                }
+                paths = staging != null ? staging.getMirror().toString() : null;
+            } else if (useManifest) {
+                paths = createScanManifest(rootProject, shardConfig, shardDirectories.get(i));
+            } else {
+                paths = null;
+            }
+            shardConfig.put("detect.hub.signature.scanner.paths", paths != null ? paths
+                    : shardDirectories.get(i).stream().map(File::getAbsolutePath).collect(joining(",")));
+            shardConfig.put("detect.project.codelocation.suffix", shard);
+            shardConfig.put("detect.output.path",
+                    new File(handlePlaceholders(rootPath, config.get("detect.output.path")), shard).getAbsolutePath());
+            if (i > 0) { // the detectors (package managers) run once, in the first shard
+                shardConfig.put("detect.tools", "SIGNATURE_SCAN");
+            }
+            shardArgs.add(toDetectArgs(shardConfig, true));
+        }
+        return shardArgs;
+    }
+
+    private boolean canSetScannerPaths(final String feature, final boolean useArgs, final Map<String, String> config) {
+        if (!useArgs) {
+            getLog().warn(feature + " requires hub-detect 5 or later, scanning the whole project");
+            return false;
+        }
+        if (config.containsKey("detect.hub.signature.scanner.paths")
+                || config.containsKey("detect.blackduck.signature.scanner.paths")) {
+            getLog().info(
+                    "Signature scanner paths are configured, " + feature.toLowerCase(Locale.ROOT) + " is not used");
+            return false;
+        }
+        return true;
+    }
+
+    // lists the files to stage without touching the mirror, null if there is nothing to stage
+    private ScanStaging prepareStaging(final MavenProject rootProject, final Map<String, String> config,
+            final List<File> directories, final File mirror) {
+        final List<Path> roots =
+                directories.stream().map(it -> it.toPath().toAbsolutePath().normalize()).collect(toList());
+        final ScanStaging staging = new ScanStaging(rootProject.getBasedir().toPath().toAbsolutePath().normalize(),
+                mirror.toPath().toAbsolutePath().normalize(),
+                new ExclusionMatcher(asList(config.get("detect.hub.signature.scanner.exclusion.patterns").split(","))),
+                getLog());
+        final BuildMetrics.Timer timer = metrics().time("scan.staging.list");
+        try {
+            for (final MavenProject project : reactorProjects) {
+                final Path basedir = project.getBasedir().toPath().toAbsolutePath().normalize();
+                if (roots.stream().anyMatch(basedir::startsWith)) {
+                    staging.addProject(project);
+                }
+            }
+            return staging.isEmpty() ? null : staging;
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    private void stage(final ScanStaging staging) {
+        final BuildMetrics.Timer timer = metrics().time("scan.staging");
+        try {
+            final Path staged = staging.stage(Runtime.getRuntime().availableProcessors());
+            metrics().increment("scan.staging.links", staging.getLinks());
+            metrics().increment("scan.staging.copies", staging.getCopies());
+            metrics().increment(BuildMetrics.BYTES + "scan.staging.copies", staging.getCopiedBytes());
+            getLog().info(String.format("Staged %d files in %s (%d links, %d copies)", staging.size(), staged,
+                    staging.getLinks(), staging.getCopies()));
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    // null if there is nothing to scan, hub-detect then uses its defaults
+    private String createScanManifest(final MavenProject rootProject, final Map<String, String> config,
+            final List<File> directories) {
+        final Path root = rootProject.getBasedir().toPath().toAbsolutePath().normalize();
+        final List<Path> ignored = reactorProjects
+                .stream()
+                .map(p -> new File(p.getBuild().getDirectory()).toPath().toAbsolutePath().normalize())
+                .collect(toList());
+        final ExclusionMatcher exclusions =
+                new ExclusionMatcher(asList(config.get("detect.hub.signature.scanner.exclusion.patterns").split(",")));
+        final BuildMetrics.Timer timer = metrics().time("scan.manifest");
+        try {
+            final ScanManifest manifest = ScanManifest.build(root,
+                    directories.stream().map(it -> it.toPath().toAbsolutePath().normalize()).collect(toList()),
+                    exclusions, ignored, scanManifestMaxPaths);
+            metrics().increment("scan.manifest.files", manifest.getFiles());
+            getLog().info(String.format("Scan manifest of %s: %d paths for %d files, %d excluded directories",
+                    directories, manifest.getPaths().size(), manifest.getFiles(), manifest.getExcludedDirectories()));
+            getLog().debug("Scan manifest: " + manifest.getPaths());
+            if (manifest.getPaths().isEmpty()) {
+                return null;
+            }
+            if (!manifest.getExclusionPatterns().isEmpty()) { // the build directories in the listed paths
+                config.put("detect.hub.signature.scanner.exclusion.patterns",
+                        config.get("detect.hub.signature.scanner.exclusion.patterns") + ','
+                                + String.join(",", manifest.getExclusionPatterns()));
+            }
+            return manifest.getPaths().stream().map(Path::toString).collect(joining(","));
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    private List<String> toDetectArgs(final Map<String, String> config, final boolean useArgs) {
+        final List<String> detectArgs = new ArrayList<>();
+        if (args != null) {
+            detectArgs.addAll(args);
+        }
+        if (useArgs) {
+            detectArgs.addAll(config
+                    .entrySet()
+                    .stream()
+                    .map(it -> "--" + it.getKey().replace("blackduck.hub.", "blackduck.").replace("detect.hub.",
+                            "detect.blackduck.") + "=" + it.getValue())
+                    .collect(toList()));
+        }
+        return detectArgs;
+    }
+
+    // the graph must land on the version detect scans, explicitly set or pinned to the project version otherwise
+    private String pinProjectVersionName(final MavenProject rootProject, final Map<String, String> config,
+            final Map<String, String> systemProperties) {
+        final String explicit = explicitProjectVersionName(systemProperties);
+        if (explicit != null) {
+            return explicit;
+        }
+        config.putIfAbsent("detect.project.version.name", rootProject.getVersion());
+        return config.get("detect.project.version.name");
+    }
+
+    private String explicitProjectVersionName(final Map<String, String> systemProperties) {
+        final String option = "--detect.project.version.name=";
+        if (args != null) {
+            final Optional<String> arg = args.stream().filter(it -> it.startsWith(option)).reduce((a, b) -> b);
+            if (arg.isPresent()) {
+                return arg.get().substring(option.length());
+            }
+        }
+        return systemProperties.get("detect.project.version.name");
+    }
+
+    // the scan created the version, the validation must not keep using a snapshot fallback for it
+    private void markVersionFound(final String version) {
+        new MissingVersionCache(new File(sharedCacheDirectory, MissingVersionCache.FILE_NAME).toPath(), 0, getLog())
+                .markFound(MissingVersionCache.key(blackduckUrl, blackduckName, version));
+    }
+
+    private Map<MavenProject, Set<Artifact>> resolveDependencies() throws MojoExecutionException {
+        final ScopeArtifactFilter scopeFilter = new ScopeArtifactFilter(scope);
+        final DependencyFilter filter = (node, parents) -> {
+            if (node.getDependency() == null) {
+                return true;
+            }
+            final Artifact artifact = RepositoryUtils.toArtifact(node.getArtifact());
+            artifact.setScope(node.getDependency().getScope());
+            return scopeFilter.include(artifact);
+        };
+        final Map<MavenProject, Set<Artifact>> dependencies = new LinkedHashMap<>();
+        final BuildMetrics.Timer timer = metrics().time("dependencies.resolve");
+        try {
+            for (final MavenProject project : reactorProjects) {
+                final DependencyResolutionResult result = dependenciesResolver
+                        .resolve(new DefaultDependencyResolutionRequest(project, session.getRepositorySession())
+                                .setResolutionFilter(filter));
+                final Set<Artifact> artifacts = new LinkedHashSet<>();
+                if (result.getDependencyGraph() != null) {
+                    RepositoryUtils.toArtifacts(artifacts, result.getDependencyGraph().getChildren(),
+                            singletonList(project.getArtifact().getId()), filter);
+                }
+                dependencies.put(project, artifacts);
+            }
+        } catch (final DependencyResolutionException e) {
+            throw new MojoExecutionException("Can't resolve the dependencies: " + e.getMessage(), e);
+        } finally {
+            timer.stop();
+        }
+        return dependencies;
+    }
+
+    private void uploadDependencyGraph(final MavenProject rootProject, final Server server, final String version,
+            final Map<MavenProject, Set<Artifact>> dependencies, final File bdio) throws MojoExecutionException {
+        final String codeLocationName = String.format("%s/%s maven graph", blackduckName, version);
+        final BuildMetrics.Timer timer = metrics().time("graph.upload");
+        try {
+            final int components = new DependencyGraphExporter(dependencies, scope).export(bdio, codeLocationName,
+                    blackduckName, version, rootProject);
+            getLog().info(String.format("Uploading dependency graph '%s' (%d components)", bdio, components));
+            new HubServicesFactory(createRestConnection(server, true)).createBomImportRequestService().importBomFile(
+                    bdio);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        } catch (final IntegrationException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    // null if the worker can't be started, the worker JVM being shared nothing is passed as system property
+    private Integer executeInWorker(final File java, final File launchedJar, final Map<String, String> systemProperties,
+            final String applicationJson, final List<String> detectArgs, final File outputLog) {
+        final DetectDaemonClient client = new DetectDaemonClient(java, launchedJar, jvmOptions, pluginVersion,
+                new File(sharedCacheDirectory, "workers"), TimeUnit.SECONDS.toMillis(daemonIdleTimeout), getLog());
+        final List<String> workerArgs = new ArrayList<>(detectArgs);
+        systemProperties.forEach((key, value) -> workerArgs.add("--" + key + '=' + value));
+        getLog().info("Executing hub-detect in worker with: " + workerArgs);
+        if (applicationJson != null) { // not logged, it contains the credentials
+            workerArgs.add("--spring.application.json=" + applicationJson);
+        }
+        final long start = System.nanoTime();
+        try (final DetectOutput output = newDetectOutput(outputLog)) {
+            final int exitStatus = client.execute(workerArgs, line -> output.accept(line, false));
+            final long duration = System.nanoTime() - start;
+            metrics().record("worker.execute", duration);
+            getLog().debug(String.format("Worker execution took %dms", TimeUnit.NANOSECONDS.toMillis(duration)));
+            return exitStatus;
+        } catch (final DetectDaemonClient.WorkerUnavailableException e) {
+            getLog().warn(e.getMessage() + ", forking a JVM instead");
+            return null;
+        } catch (final IOException e) {
+            getLog().error(e);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private DetectOutput newDetectOutput(final File outputLog) throws IOException {
+        return new DetectOutput(getLog(), outputLog.toPath(), outputLogMaxSize, outputLogFiles, consoleLevel,
+                metrics());
+    }
+
+    private Path findInCache(final SharedCache cache, final String name, final String version, final String entry,
+            final boolean directory) {
+        if (cache == null) {
+            return null;
+        }
+        try {
+            final Path found =
+                    directory ? cache.findDirectory(name, version, entry) : cache.findFile(name, version, entry);
+            metrics().cache("shared." + entry, found != null);
+            return found;
+        } catch (final IOException e) {
+            getLog().warn(String.format("Can't read shared cache '%s': %s", cache.getRoot(), e.getMessage()));
+            return null;
+        }
+    }
+
+    private File linkDirectory(final SharedCache cache, final Path cached, final File target) {
+        try {
+            return cache.linkDirectory(cached, target);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     private boolean shouldUseArgs(final String hubDetectVersion) {
@@ -397,63 +1184,44 @@ public class HubDetectMojo extends BlackduckBase {
         }
     }
 
-    private File downloadScanCli(final MavenProject rootProject) { // todo: use wagon to have progress
-        getLog().info("Downloading scan.cli.zip, can take some time...\r");
+    private File downloadScanCli(final MavenProject rootProject, final File explodedScanCli) {
+        final ScanCliDownloader downloader =
+                new ScanCliDownloader(getLog(), scanCliDownloadThreads, scanCliDownloadChunkSize);
+        final BuildMetrics.Timer timer = metrics().time("scancli.download");
         try {
-            final URL url = new URL(scanCliDownloadUrl);
-            final HttpURLConnection connection = HttpURLConnection.class.cast(url.openConnection());
-            final File zip = new File(rootProject.getBuild().getDirectory(),
-                    "blackduck/" + getClass().getSimpleName() + "/scan.cli.zip");
-            zip.getParentFile().mkdirs();
-            final int bufferSize = 819200;
-            long downloaded = 0;
-            final long start = System.nanoTime();
-            final long length = connection.getContentLengthLong();
-            try (final OutputStream os = new BufferedOutputStream(new FileOutputStream(zip), bufferSize)) {
-                final byte[] buffer = new byte[bufferSize];
-                int read;
-                int percentage = -1;
-                final InputStream inputStream = connection.getInputStream();
-                while ((read = inputStream.read(buffer)) >= 0) {
-                    downloaded += read;
-                    if (read > 0) {
-                        os.write(buffer, 0, read);
-                        final float value = downloaded * 1f / length;
-                        final int pcTracker = (int) (value * 100);
-                        if (percentage != pcTracker) {
-                            System.out.printf("Downloading scan.cli.zip - %2.2f%%\r", value);
-                            System.out.flush();
-                            percentage = pcTracker;
-                        }
-                    }
-                }
-            } finally {
-                connection.disconnect();
-            }
-            final long end = System.nanoTime();
-            getLog().info(String.format("Downloaded scan.cli.zip in %d seconds", TimeUnit.NANOSECONDS.toSeconds(end - start)));
+            final File zip = scanCliStreamingExtraction
+                    ? downloader.downloadAndExtract(scanCliDownloadUrl, scanCliCache, explodedScanCli)
+                    : downloader.download(scanCliDownloadUrl, new File(rootProject.getBuild().getDirectory(),
+                            "blackduck/" + getClass().getSimpleName() + "/scan.cli.zip"));
+            metrics().increment(BuildMetrics.BYTES + "scancli.download", zip.length());
             return zip;
         } catch (final IOException e) {
             throw new IllegalStateException(e);
+        } finally {
+            timer.stop();
         }
     }
 
     private String getHubDetectVersion(final String[] gav) {
-        String hubDetectVersion;
         if (!"latest".equalsIgnoreCase(gav[2])) {
             return gav[2];
         }
+        final String url = String.format(latestVersionUrl, artifactoryBase, gav[0], gav[1], artifactRepositoryName);
+        final String hubDetectVersion;
+        final BuildMetrics.Timer timer = metrics().time("version.latest");
         try {
-            final URL versionUrl = new URL(
-                    String.format(latestVersionUrl, artifactoryBase, gav[0], gav[1], artifactRepositoryName));
-            try (final InputStream stream = versionUrl.openStream()) {
-                hubDetectVersion = IOUtil.toString(stream);
-            }
-
-            return hubDetectVersion;
-        } catch (final IOException e) {
-            return OLD_HUB_DETECT.split(":")[2];
+            hubDetectVersion = new LatestVersionCache(new File(sharedCacheDirectory, "versions.properties").toPath(),
+                    TimeUnit.SECONDS.toMillis(latestVersionCacheTtl), latestVersionConnectTimeout,
+                    latestVersionReadTimeout, getLog()).get(url);
+        } finally {
+            timer.stop();
+        }
+        if (hubDetectVersion == null) {
+            final String fallback = OLD_HUB_DETECT.split(":")[2];
+            getLog().warn(String.format("Can't determine latest version of %s:%s, using %s", gav[0], gav[1], fallback));
+            return fallback;
         }
+        return hubDetectVersion;
     }
 
     private String handlePlaceholders(final String rootPath, final String value) {
@@ -461,27 +1229,16 @@ public class HubDetectMojo extends BlackduckBase {
     }
 
     private void unzip(final File zipFile, final File destination, final boolean noparent) {
-        getLog().info(String.format("Extracting '%s' to '%s'", zipFile.getAbsolutePath(), destination.getAbsolutePath()));
+        getLog().info(
+                String.format("Extracting '%s' to '%s'", zipFile.getAbsolutePath(), destination.getAbsolutePath()));
+        final int threads = unzipThreads > 0 ? unzipThreads : Runtime.getRuntime().availableProcessors();
+        final long start = System.nanoTime();
         try {
-            final ZipInputStream in = new ZipInputStream(new BufferedInputStream(new FileInputStream(zipFile)));
-            ZipEntry entry;
-            while ((entry = in.getNextEntry()) != null) {
-                String path = entry.getName();
-                if (noparent) {
-                    path = path.replaceFirst("^[^/]+/", "");
-                }
-                final File file = new File(destination, path);
-
-                if (entry.isDirectory()) {
-                    file.mkdirs();
-                    continue;
-                }
-
-                file.getParentFile().mkdirs();
-                Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
-            }
-
-            in.close();
+            final int files = ZipExtractor.unzip(zipFile, destination, noparent, threads);
+            final long duration = System.nanoTime() - start;
+            metrics().record("scancli.unzip", duration);
+            getLog().info(String.format("Extracted %d files in %dms using %d thread(s)", files,
+                    TimeUnit.NANOSECONDS.toMillis(duration), threads));
         } catch (final Exception e) {
             throw new IllegalStateException("Unable to unzip " + zipFile.getAbsolutePath(), e);
         }
@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.maven.AbstractMavenLifecycleParticipant;
+import org.apache.maven.MavenExecutionException;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Joins the hub-detect executions started in background when the last module of the build ends, before the build
+ * result is reported, a failure fails this module. The executions not joined then (a module failed) are joined at
+ * the end of the session. Only active when the plugin is declared with {@code <extensions>true</extensions>}.
+ */
+@Singleton
+@Named("talend-tools-hub-detect")
+public class HubDetectSessionParticipant extends AbstractMavenLifecycleParticipant {
+
+    private static final String ACTIVE = HubDetectSessionParticipant.class.getName() + ".active";
+
+    private static final String PENDING = HubDetectSessionParticipant.class.getName() + ".pending";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HubDetectSessionParticipant.class);
+
+    @Override
+    public void afterProjectsRead(final MavenSession session) {
+        session.getRequest().getData().put(ACTIVE, true);
+    }
+
+    @Override
+    public void afterSessionEnd(final MavenSession session) throws MavenExecutionException {
+        try {
+            joinPending(session);
+        } catch (final MavenExecutionException e) { // the build result is already printed, make it visible
+            LOGGER.error("------------------------------------------------------------------------");
+            LOGGER.error("BACKGROUND HUB-DETECT FAILED, the build exit code is the authoritative status:");
+            LOGGER.error(e.getMessage());
+            LOGGER.error("------------------------------------------------------------------------");
+            throw e;
+        } finally { // background executions are done, the shared connections can be released
+            RestConnectionPool.release(session);
+        }
+    }
+
+    private static void joinPending(final MavenSession session) throws MavenExecutionException {
+        final Queue<Execution> pending = getPending(session.getRequest().getData());
+        if (pending.isEmpty()) {
+            return;
+        }
+        final List<String> failures = new ArrayList<>();
+        Throwable firstError = null;
+        // joined in submission order to report the failures deterministically
+        Execution execution;
+        while ((execution = pending.poll()) != null) {
+            LOGGER.info("Waiting for " + execution.name);
+            try {
+                execution.task.get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MavenExecutionException("Interrupted while waiting for " + execution.name,
+                        session.getRequest().getPom());
+            } catch (final ExecutionException e) {
+                final Throwable cause = e.getCause();
+                LOGGER.error(execution.name + " failed: " + cause.getMessage(), cause);
+                failures.add(execution.name + ": " + cause.getMessage());
+                if (firstError == null) {
+                    firstError = cause;
+                }
+            }
+        }
+        if (firstError != null) {
+            throw new MavenExecutionException(String.join("\n", failures), firstError);
+        }
+    }
+
+    static boolean isActive(final MavenSession session) {
+        return Boolean.TRUE.equals(session.getRequest().getData().get(ACTIVE));
+    }
+
+    static void submit(final MavenSession session, final String name, final Runnable task, final Log log)
+            throws MojoFailureException, MojoExecutionException {
+        final Execution execution = new Execution(name, new FutureTask<>(task, null));
+        getPending(session.getRequest().getData()).add(execution);
+        final Thread thread = new Thread(execution.task, name);
+        thread.start();
+        final ReactorCompletion completion = ReactorCompletion.of(session);
+        if (completion.isActive()) { // else joined at the end of the session
+            completion.tracker(PENDING, session.getProjects(), log).defer(() -> {
+                try {
+                    joinPending(session);
+                } catch (final MavenExecutionException e) {
+                    throw new MojoFailureException(e.getMessage(), e.getCause());
+                }
+            });
+        }
+    }
+
+    private static Queue<Execution> getPending(final Map<String, Object> data) {
+        @SuppressWarnings("unchecked")
+        final Queue<Execution> queue =
+                (Queue<Execution>) data.computeIfAbsent(PENDING, k -> new ConcurrentLinkedQueue<Execution>());
+        return queue;
+    }
+
+    private static class Execution {
+
+        private final String name;
+
+        private final FutureTask<Void> task;
+
+        private Execution(final String name, final FutureTask<Void> task) {
+            this.name = name;
+            this.task = task;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.shared.utils.io.IOUtil;
+
+/**
+ * On disk cache of the "latest" versions resolved against artifactory. A fresh entry is used as is, a stale entry is
+ * used too but refreshed in background for the next builds, only a missing entry blocks the build on the network.
+ */
+class LatestVersionCache {
+
+    private static final ConcurrentMap<String, Boolean> REFRESHING = new ConcurrentHashMap<>();
+
+    private final PropertiesFile file;
+
+    private final long ttl;
+
+    private final int connectTimeout;
+
+    private final int readTimeout;
+
+    private final Log log;
+
+    LatestVersionCache(final Path file, final long ttl, final int connectTimeout, final int readTimeout,
+            final Log log) {
+        this.file = new PropertiesFile(file, "latest versions cache", log);
+        this.ttl = ttl;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.log = log;
+    }
+
+    /**
+     * @return the cached or fetched version, null if it can't be determined.
+     */
+    String get(final String url) {
+        final String[] cached = ttl > 0 ? read(url) : null;
+        if (cached != null) {
+            final long age = System.currentTimeMillis() - Long.parseLong(cached[1]);
+            if (age > ttl && REFRESHING.putIfAbsent(url, true) == null) {
+                log.debug(String.format("Cached version of '%s' is %dms old, refreshing it in background", url, age));
+                final Thread refresher = new Thread(() -> {
+                    try {
+                        fetchAndStore(url);
+                    } catch (final IOException e) {
+                        log.debug("Can't refresh " + url + ": " + e.getMessage());
+                    } finally {
+                        REFRESHING.remove(url);
+                    }
+                }, getClass().getName() + "-refresh");
+                refresher.setDaemon(true);
+                refresher.start();
+            }
+            return cached[0];
+        }
+        try {
+            return fetchAndStore(url);
+        } catch (final IOException e) {
+            log.warn(String.format("Can't fetch latest version from '%s': %s", url, e.getMessage()));
+            return null;
+        }
+    }
+
+    private String fetchAndStore(final String url) throws IOException {
+        final HttpURLConnection connection = HttpURLConnection.class.cast(new URL(url).openConnection());
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        final String version;
+        try (final InputStream stream = connection.getInputStream()) {
+            version = IOUtil.toString(stream).trim();
+        } finally {
+            connection.disconnect();
+        }
+        if (version.isEmpty()) {
+            throw new IOException("Empty version returned by " + url);
+        }
+        if (ttl > 0) {
+            write(url, version);
+        }
+        return version;
+    }
+
+    private String[] read(final String url) {
+        final String value = file.load().getProperty(url);
+        if (value == null) {
+            return null;
+        }
+        final String[] segments = value.split("\\|");
+        if (segments.length != 2) {
+            return null;
+        }
+        try {
+            Long.parseLong(segments[1]);
+        } catch (final NumberFormatException nfe) {
+            return null;
+        }
+        return segments;
+    }
+
+    private void write(final String url, final String version) throws IOException {
+        file.update(properties -> {
+            properties.setProperty(url, version + '|' + System.currentTimeMillis());
+            return true;
+        });
+    }
+}
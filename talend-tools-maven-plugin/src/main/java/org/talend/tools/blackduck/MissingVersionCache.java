@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * On disk cache of the project versions which don't exist in blackduck, an entry expires after the configured TTL so
+ * a version created since is found again.
+ */
+class MissingVersionCache {
+
+    static final String FILE_NAME = "missing-versions.properties";
+
+    private final PropertiesFile file;
+
+    private final long ttl;
+
+    private final Log log;
+
+    /**
+     * @param ttl how long (ms) a missing version is not looked up again.
+     */
+    MissingVersionCache(final Path file, final long ttl, final Log log) {
+        this.file = new PropertiesFile(file, "blackduck missing project versions", log);
+        this.ttl = ttl;
+        this.log = log;
+    }
+
+    static String key(final String server, final String name, final String version) {
+        return server + '|' + name + '|' + version;
+    }
+
+    boolean isMissing(final String key) {
+        final String expiry = file.load().getProperty(key);
+        if (expiry == null) {
+            return false;
+        }
+        try {
+            return Long.parseLong(expiry) > System.currentTimeMillis();
+        } catch (final NumberFormatException nfe) {
+            return false;
+        }
+    }
+
+    void markMissing(final String key) {
+        update(key, Long.toString(System.currentTimeMillis() + ttl));
+    }
+
+    void markFound(final String key) {
+        update(key, null);
+    }
+
+    private void update(final String key, final String value) {
+        if (value == null && !file.load().containsKey(key)) { // avoid the lock in the common case
+            return;
+        }
+        try {
+            file.update(properties -> {
+                if (value == null && !properties.containsKey(key)) {
+                    return false;
+                }
+                final long now = System.currentTimeMillis();
+                properties.stringPropertyNames().stream().filter(it -> { // purge the expired entries
+                    try {
+                        return Long.parseLong(properties.getProperty(it)) <= now;
+                    } catch (final NumberFormatException nfe) {
+                        return true;
+                    }
+                }).forEach(properties::remove);
+                if (value == null) {
+                    properties.remove(key);
+                } else {
+                    properties.setProperty(key, value);
+                }
+                return true;
+            });
+        } catch (final IOException e) {
+            log.warn("Can't store " + file.getFile() + ": " + e.getMessage());
+        }
+    }
+}
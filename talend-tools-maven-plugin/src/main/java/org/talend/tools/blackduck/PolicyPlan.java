@@ -0,0 +1,258 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import static java.util.Collections.emptyList;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.talend.tools.blackduck.ReportAggregator.Category;
+import org.talend.tools.blackduck.ReportAggregator.Severity;
+
+/**
+ * {@link PolicyRule}s compiled once: each rule becomes a sparse vector of coefficients over the report counters and
+ * precompiled allow-list patterns. The plan is either evaluated on aggregated counters or, when a rule needs to know
+ * the components (allow-list), fed with each report entry during the single streaming pass.
+ */
+class PolicyPlan implements ReportAggregator.EntryListener {
+
+    private static final Pattern TERM =
+            Pattern.compile("\\s*([+-]?)\\s*(?:(\\d+)\\s*\\*\\s*)?([A-Za-z]+)\\.([A-Za-z]+)\\s*");
+
+    private final List<CompiledRule> rules;
+
+    private final boolean needsEntries;
+
+    private final boolean collectComponents;
+
+    private PolicyPlan(final List<CompiledRule> rules, final boolean collectComponents) {
+        this.rules = rules;
+        this.collectComponents = collectComponents;
+        this.needsEntries = rules.stream().anyMatch(it -> it.allowed != null);
+    }
+
+    /**
+     * @param collectComponents should the components contributing to a rule be kept to report them.
+     */
+    static PolicyPlan compile(final List<PolicyRule> rules, final boolean collectComponents) {
+        final List<CompiledRule> compiled = new ArrayList<>(rules.size());
+        for (final PolicyRule rule : rules) {
+            final String name = rule.getName() != null ? rule.getName()
+                    : (rule.getExpression() != null ? rule.getExpression()
+                            : rule.getCategory() + '.' + rule.getSeverity());
+            final Map<Integer, Integer> coefficients = new LinkedHashMap<>();
+            if (rule.getExpression() != null && !rule.getExpression().trim().isEmpty()) {
+                parseExpression(name, rule.getExpression(), coefficients);
+            } else if (rule.getCategory() != null) {
+                coefficients.put(
+                        index(name, rule.getCategory(), rule.getSeverity() == null ? "HIGH" : rule.getSeverity()), 1);
+            } else {
+                throw new IllegalArgumentException(String.format("Rule '%s' has no category nor expression", name));
+            }
+            final Pattern[] allowed =
+                    rule.getAllowedComponents() == null || rule.getAllowedComponents().isEmpty() ? null
+                            : rule.getAllowedComponents().stream().map(PolicyPlan::toPattern).toArray(Pattern[]::new);
+            final int[] indexes = new int[coefficients.size()];
+            final int[] factors = new int[coefficients.size()];
+            int i = 0;
+            for (final Map.Entry<Integer, Integer> coefficient : coefficients.entrySet()) {
+                indexes[i] = coefficient.getKey();
+                factors[i++] = coefficient.getValue();
+            }
+            compiled.add(new CompiledRule(rule, name, indexes, factors, allowed));
+        }
+        return new PolicyPlan(compiled, collectComponents);
+    }
+
+    /**
+     * @return true if aggregated counters are not enough to evaluate the rules.
+     */
+    boolean needsEntries() {
+        return needsEntries;
+    }
+
+    @Override
+    public void onEntry(final String component, final String version, final int[] counts) {
+        for (final CompiledRule rule : rules) {
+            final long value = rule.value(counts);
+            if (value == 0 || rule.isAllowed(component, version)) {
+                continue;
+            }
+            rule.total += value;
+            if (collectComponents && value > 0) {
+                rule.components.add(String.format("%s %s (%d)", component, version, value));
+            }
+        }
+    }
+
+    /**
+     * @return the results computed from the entries passed to {@link #onEntry}.
+     */
+    List<Result> results() {
+        final List<Result> results = new ArrayList<>(rules.size());
+        for (final CompiledRule rule : rules) {
+            results.add(new Result(rule.rule, rule.name, rule.total, rule.components));
+        }
+        return results;
+    }
+
+    /**
+     * @param totals the aggregated counters (indexed with {@link ReportAggregator#index}).
+     * @return the results, only valid if {@link #needsEntries()} is false.
+     */
+    List<Result> evaluate(final int[] totals) {
+        final List<Result> results = new ArrayList<>(rules.size());
+        for (final CompiledRule rule : rules) {
+            results.add(new Result(rule.rule, rule.name, rule.value(totals), emptyList()));
+        }
+        return results;
+    }
+
+    private static void parseExpression(final String name, final String expression,
+            final Map<Integer, Integer> coefficients) {
+        final String normalized = expression.trim();
+        final Matcher matcher = TERM.matcher(normalized);
+        int position = 0;
+        while (position < normalized.length()) {
+            if (!matcher.find(position) || matcher.start() != position
+                    || (position > 0 && matcher.group(1).isEmpty())) {
+                throw new IllegalArgumentException(
+                        String.format("Invalid expression '%s' for rule '%s' at index %d", expression, name, position));
+            }
+            final int factor = (matcher.group(2) == null ? 1 : Integer.parseInt(matcher.group(2)))
+                    * ("-".equals(matcher.group(1)) ? -1 : 1);
+            coefficients.merge(index(name, matcher.group(3), matcher.group(4)), factor, Integer::sum);
+            position = matcher.end();
+        }
+        if (coefficients.isEmpty()) {
+            throw new IllegalArgumentException(String.format("Empty expression for rule '%s'", name));
+        }
+    }
+
+    private static int index(final String rule, final String category, final String severity) {
+        try {
+            return ReportAggregator.index(Category.valueOf(category.trim().toUpperCase(Locale.ROOT)),
+                    Severity.valueOf(severity.trim().toUpperCase(Locale.ROOT)));
+        } catch (final IllegalArgumentException iae) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid category/severity '%s.%s' for rule '%s'", category, severity, rule));
+        }
+    }
+
+    private static Pattern toPattern(final String component) {
+        final String value = component.trim();
+        final String withVersion = value.contains(":") ? value : value + ":*";
+        final StringBuilder regex = new StringBuilder();
+        for (final String segment : withVersion.split("\\*", -1)) {
+            if (regex.length() > 0) {
+                regex.append(".*");
+            }
+            regex.append(Pattern.quote(segment));
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    static class Result {
+
+        private final PolicyRule rule;
+
+        private final String name;
+
+        private final long value;
+
+        private final List<String> components;
+
+        private Result(final PolicyRule rule, final String name, final long value, final List<String> components) {
+            this.rule = rule;
+            this.name = name;
+            this.value = value;
+            this.components = components;
+        }
+
+        PolicyRule getRule() {
+            return rule;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        long getValue() {
+            return value;
+        }
+
+        List<String> getComponents() {
+            return components;
+        }
+
+        boolean isViolated() {
+            return value > rule.getMax();
+        }
+    }
+
+    private static class CompiledRule {
+
+        private final PolicyRule rule;
+
+        private final String name;
+
+        private final int[] indexes;
+
+        private final int[] factors;
+
+        private final Pattern[] allowed;
+
+        private final List<String> components = new ArrayList<>();
+
+        private long total;
+
+        private CompiledRule(final PolicyRule rule, final String name, final int[] indexes, final int[] factors,
+                final Pattern[] allowed) {
+            this.rule = rule;
+            this.name = name;
+            this.indexes = indexes;
+            this.factors = factors;
+            this.allowed = allowed;
+        }
+
+        private long value(final int[] counts) {
+            long value = 0;
+            for (int i = 0; i < indexes.length; i++) {
+                value += (long) factors[i] * counts[indexes[i]];
+            }
+            return value;
+        }
+
+        private boolean isAllowed(final String component, final String version) {
+            if (allowed == null) {
+                return false;
+            }
+            final String id = component + ':' + version;
+            for (final Pattern pattern : allowed) {
+                if (pattern.matcher(id).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
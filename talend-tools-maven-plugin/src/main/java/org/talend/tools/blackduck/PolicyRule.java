@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import java.util.List;
+
+/**
+ * A validation rule, it fails when the counted risks are greater than {@code max}.
+ *
+ * <pre>
+ * {@code
+ * <policyRule>
+ *   <name>no-vulnerability</name>
+ *   <category>VULNERABILITY</category> <!-- or an expression: <expression>VULNERABILITY.HIGH + 2 * LICENSE.HIGH</expression> -->
+ *   <severity>HIGH</severity>
+ *   <max>0</max>
+ *   <allowedComponents> <!-- name or name:version, * is a wildcard -->
+ *     <allowedComponent>Apache Commons*</allowedComponent>
+ *   </allowedComponents>
+ * </policyRule>
+ * }
+ * </pre>
+ */
+public class PolicyRule {
+
+    /**
+     * The name used in the failure messages.
+     */
+    private String name;
+
+    /**
+     * The risk category (VULNERABILITY, ACTIVITY, VERSION, LICENSE, OPERATIONAL), ignored if expression is set.
+     */
+    private String category;
+
+    /**
+     * The severity (HIGH, MEDIUM, LOW, OK, UNKNOWN) counted for the category.
+     */
+    private String severity = "HIGH";
+
+    /**
+     * A sum of counters ({@code [factor *] CATEGORY.SEVERITY} terms separated by + or -) to use instead of a single
+     * category/severity.
+     */
+    private String expression;
+
+    /**
+     * The maximum accepted value.
+     */
+    private int max;
+
+    /**
+     * The components ignored by the rule.
+     */
+    private List<String> allowedComponents;
+
+    public PolicyRule() {
+        // no-op
+    }
+
+    PolicyRule(final String name, final String category, final String severity, final int max) {
+        this.name = name;
+        this.category = category;
+        this.severity = severity;
+        this.max = max;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(final String name) {
+        this.name = name;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(final String category) {
+        this.category = category;
+    }
+
+    public String getSeverity() {
+        return severity;
+    }
+
+    public void setSeverity(final String severity) {
+        this.severity = severity;
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public void setExpression(final String expression) {
+        this.expression = expression;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    public void setMax(final int max) {
+        this.max = max;
+    }
+
+    public List<String> getAllowedComponents() {
+        return allowedComponents;
+    }
+
+    public void setAllowedComponents(final List<String> allowedComponents) {
+        this.allowedComponents = allowedComponents;
+    }
+}
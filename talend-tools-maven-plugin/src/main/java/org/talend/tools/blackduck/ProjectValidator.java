@@ -0,0 +1,314 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.talend.tools.blackduck.ReportAggregator.Category;
+import org.talend.tools.blackduck.ReportAggregator.Severity;
+
+import com.blackducksoftware.integration.exception.IntegrationException;
+import com.blackducksoftware.integration.hub.api.report.ReportRequestService;
+import com.blackducksoftware.integration.hub.model.view.ProjectVersionView;
+import com.blackducksoftware.integration.hub.model.view.RiskProfileView;
+import com.blackducksoftware.integration.hub.model.view.components.CategoriesView;
+import com.blackducksoftware.integration.hub.model.view.components.CategoryCountView;
+import com.blackducksoftware.integration.hub.rest.CredentialsRestConnection;
+import com.blackducksoftware.integration.hub.service.HubResponseService;
+
+import okhttp3.Response;
+
+/**
+ * Evaluates the policy rules against a project version, from the risk profile, the report cache or the components
+ * report. Thread safe as long as the report cache is (it is shared by the batch validation).
+ */
+class ProjectValidator {
+
+    private final CredentialsRestConnection restConnection;
+
+    private final ReportRequestService reportService;
+
+    private final ReportPoller poller;
+
+    private final ReportCache cache;
+
+    private final boolean useRiskProfile;
+
+    private final boolean detailedFailures;
+
+    private final BuildMetrics metrics;
+
+    private final Log log;
+
+    /**
+     * @param cache optional, the report cache to use.
+     */
+    ProjectValidator(final CredentialsRestConnection restConnection, final ReportRequestService reportService,
+            final ReportPoller poller, final ReportCache cache, final boolean useRiskProfile,
+            final boolean detailedFailures, final BuildMetrics metrics, final Log log) {
+        this.restConnection = restConnection;
+        this.reportService = reportService;
+        this.poller = poller;
+        this.cache = cache;
+        this.useRiskProfile = useRiskProfile;
+        this.detailedFailures = detailedFailures;
+        this.metrics = metrics;
+        this.log = log;
+    }
+
+    /**
+     * @param rules the rules, the first {@code legacyRules} ones are the accepted* thresholds.
+     * @param label prefix of the log messages.
+     * @return the failure messages, empty if the version is valid.
+     */
+    List<String> validate(final ProjectVersionView versionView, final List<PolicyRule> rules, final int legacyRules,
+            final String label) throws MojoExecutionException {
+        final PolicyPlan plan;
+        try {
+            plan = PolicyPlan.compile(rules, detailedFailures);
+        } catch (final IllegalArgumentException iae) {
+            throw new MojoExecutionException(iae.getMessage(), iae);
+        }
+        // a streamed report can be retried so each attempt needs its own plan
+        final Supplier<PolicyPlan> plans = () -> PolicyPlan.compile(rules, detailedFailures);
+
+        String versionHref = null;
+        RiskProfileView riskProfile = null;
+        if (cache != null || useRiskProfile || poller.isShared()) { // shared reports are checked against the BOM
+            final BuildMetrics.Timer timer = metrics.time("riskProfile.fetch");
+            try {
+                final HubResponseService responseService = new HubResponseService(restConnection);
+                versionHref = responseService.getHref(versionView);
+                riskProfile = responseService.getItemFromLink(versionView, "riskProfile", RiskProfileView.class);
+            } catch (final IntegrationException e) {
+                log.debug(label + "Can't read the risk profile: " + e.getMessage());
+            } finally {
+                timer.stop();
+            }
+        }
+
+        final Date bomLastUpdatedAt = riskProfile != null ? riskProfile.bomLastUpdatedAt : null;
+        final boolean cacheable = cache != null && bomLastUpdatedAt != null;
+        int[] totals = null;
+        if (!plan.needsEntries()) { // allow-lists need the components so only the report can be used
+            if (useRiskProfile) {
+                totals = riskProfile != null && riskProfile.categories != null ? toTotals(riskProfile.categories)
+                        : null;
+                if (totals != null) {
+                    log.debug(label + "Using the risk profile of the project version");
+                } else {
+                    log.info(label + "No complete risk profile available, falling back on the full report");
+                }
+            }
+            if (totals == null && cacheable) {
+                totals = toTotals(cache.get(versionHref, bomLastUpdatedAt.getTime()));
+                metrics.cache("report", totals != null);
+                if (totals != null) {
+                    log.info(String.format("%sBOM didn't change since %s, using cached report results", label,
+                            bomLastUpdatedAt));
+                }
+            }
+        }
+        final List<PolicyPlan.Result> results;
+        boolean streamed = false;
+        if (totals != null) {
+            results = plan.evaluate(totals);
+        } else {
+            final StreamedReport report = streamReport(versionView, bomLastUpdatedAt, plans, label);
+            streamed = true;
+            results = report.plan.results();
+            if (cacheable) {
+                cache.put(versionHref, bomLastUpdatedAt.getTime(), toCounts(report.aggregator.getTotals()));
+            }
+        }
+
+        final List<String> failures = new ArrayList<>();
+        if (results.stream().noneMatch(PolicyPlan.Result::isViolated)) {
+            return failures;
+        }
+        if (detailedFailures) {
+            final List<PolicyPlan.Result> detailed;
+            if (streamed) {
+                detailed = results;
+            } else {
+                detailed = streamReport(versionView, bomLastUpdatedAt, plans, label).plan.results();
+            }
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i).isViolated()) {
+                    final String name = results.get(i).getName();
+                    final String pattern = i < legacyRules ? "%s%s high risk: %s" : "%s%s risk: %s";
+                    detailed.get(i).getComponents().forEach(it -> log.error(String.format(pattern, label, name, it)));
+                }
+            }
+        }
+        for (int i = 0; i < results.size(); i++) {
+            final PolicyPlan.Result result = results.get(i);
+            if (!result.isViolated()) {
+                continue;
+            }
+            final String message = i < legacyRules
+                    ? String.format("Found #%d %s high violations, accepted: #%d", result.getValue(), result.getName(),
+                            result.getRule().getMax())
+                    : String.format("Policy '%s' failed, found #%d, accepted: #%d", result.getName(), result.getValue(),
+                            result.getRule().getMax());
+            log.error(label + message);
+            failures.add(message);
+        }
+        return failures;
+    }
+
+    private StreamedReport streamReport(final ProjectVersionView versionView, final Date bomLastUpdatedAt,
+            final Supplier<PolicyPlan> plans, final String label) throws MojoExecutionException {
+        final BuildMetrics.Timer timer = metrics.time("report.fetch");
+        try {
+            return doStreamReport(versionView, bomLastUpdatedAt, plans, label);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    private StreamedReport doStreamReport(final ProjectVersionView versionView, final Date bomLastUpdatedAt,
+            final Supplier<PolicyPlan> plans, final String label) throws MojoExecutionException {
+        ReportPoller.Report report = poller.start(versionView, true, bomLastUpdatedAt);
+        while (true) {
+            try {
+                final String contentUrl = poller.await(report);
+                final PolicyPlan plan = plans.get();
+                final ReportAggregator aggregator = new ReportAggregator();
+                try (final Response response =
+                        reportService.getHubRequestFactory().createRequest(contentUrl).executeGet();
+                        final CountingReader reader = new CountingReader(response.body().charStream())) {
+                    try {
+                        aggregator.aggregate(reader, plan);
+                    } finally {
+                        metrics.increment("report.content.characters", reader.count);
+                    }
+                }
+                log.debug(String.format("%sAggregated %d report entries", label, aggregator.getEntries()));
+                return new StreamedReport(aggregator, plan);
+            } catch (final IntegrationException | IOException e) {
+                if (!report.isReused()) {
+                    throw new MojoExecutionException(e.getMessage(), e);
+                }
+                // the owner can have deleted it in between, even while streaming it, generate our own
+                log.debug(label + "Can't use the report of another build: " + e.getMessage());
+            } finally {
+                poller.release(report);
+            }
+            report = poller.start(versionView, false, bomLastUpdatedAt);
+        }
+    }
+
+    // a missing category can't be read as 0 (the rules would pass), null means use the report
+    private int[] toTotals(final CategoriesView categories) {
+        final int[] totals = new int[Category.values().length * Severity.values().length];
+        final boolean complete = fill(totals, Category.VULNERABILITY, categories.vulnerability)
+                & fill(totals, Category.ACTIVITY, categories.activity)
+                & fill(totals, Category.VERSION, categories.version)
+                & fill(totals, Category.LICENSE, categories.license)
+                & fill(totals, Category.OPERATIONAL, categories.operational);
+        return complete ? totals : null;
+    }
+
+    private boolean fill(final int[] totals, final Category category, final CategoryCountView view) {
+        if (view == null) {
+            return false;
+        }
+        totals[ReportAggregator.index(category, Severity.HIGH)] = view.highCount;
+        totals[ReportAggregator.index(category, Severity.MEDIUM)] = view.mediumCount;
+        totals[ReportAggregator.index(category, Severity.LOW)] = view.lowCount;
+        totals[ReportAggregator.index(category, Severity.OK)] = view.okCount;
+        totals[ReportAggregator.index(category, Severity.UNKNOWN)] = view.unknownCount;
+        return true;
+    }
+
+    // a cached entry missing a counter (older format) is ignored
+    private int[] toTotals(final Map<String, Integer> counts) {
+        if (counts == null) {
+            return null;
+        }
+        final int[] totals = new int[Category.values().length * Severity.values().length];
+        for (final Category category : Category.values()) {
+            for (final Severity severity : Severity.values()) {
+                final Integer value = counts.get(category.name() + '.' + severity.name());
+                if (value == null) {
+                    return null;
+                }
+                totals[ReportAggregator.index(category, severity)] = value;
+            }
+        }
+        return totals;
+    }
+
+    private Map<String, Integer> toCounts(final int[] totals) {
+        final Map<String, Integer> counts = new TreeMap<>();
+        for (final Category category : Category.values()) {
+            for (final Severity severity : Severity.values()) {
+                counts.put(category.name() + '.' + severity.name(), totals[ReportAggregator.index(category, severity)]);
+            }
+        }
+        return counts;
+    }
+
+    private static class StreamedReport {
+
+        private final ReportAggregator aggregator;
+
+        private final PolicyPlan plan;
+
+        private StreamedReport(final ReportAggregator aggregator, final PolicyPlan plan) {
+            this.aggregator = aggregator;
+            this.plan = plan;
+        }
+    }
+
+    private static class CountingReader extends FilterReader {
+
+        private long count;
+
+        private CountingReader(final Reader delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int read = super.read();
+            if (read >= 0) {
+                count++;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(final char[] buffer, final int offset, final int length) throws IOException {
+            final int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+}
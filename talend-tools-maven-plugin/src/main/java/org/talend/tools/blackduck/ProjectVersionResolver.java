@@ -0,0 +1,163 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+import com.blackducksoftware.integration.exception.IntegrationException;
+import com.blackducksoftware.integration.hub.dataservice.project.ProjectDataService;
+import com.blackducksoftware.integration.hub.dataservice.project.ProjectVersionWrapper;
+import com.blackducksoftware.integration.hub.exception.DoesNotExistException;
+
+/**
+ * Finds the blackduck project version to validate: the exact version, else the closest snapshot for a release, else
+ * the version is created (or reported as missing when the creation is disabled). The candidates are looked up
+ * concurrently and the first one found in this order wins, the snapshot fallbacks known as missing (negative cache)
+ * are not looked up again. The exact version is always looked up since a scan can create it at any time.
+ */
+class ProjectVersionResolver {
+
+    private static final ExecutorService LOOKUPS = Executors.newCachedThreadPool(r -> {
+        final Thread thread = new Thread(r, "blackduck-version-lookup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ProjectDataService projectService;
+
+    private final String server;
+
+    private final MissingVersionCache missingVersions;
+
+    private final boolean create;
+
+    private final BuildMetrics metrics;
+
+    private final Log log;
+
+    /**
+     * @param missingVersions optional, the negative cache to use.
+     * @param create should a version not found be created.
+     */
+    ProjectVersionResolver(final ProjectDataService projectService, final String server,
+            final MissingVersionCache missingVersions, final boolean create, final BuildMetrics metrics,
+            final Log log) {
+        this.projectService = projectService;
+        this.server = server;
+        this.missingVersions = missingVersions;
+        this.create = create;
+        this.metrics = metrics;
+        this.log = log;
+    }
+
+    ProjectVersionWrapper resolve(final String name, final String version) throws MojoExecutionException {
+        final BuildMetrics.Timer timer = metrics.time("version.lookup");
+        try {
+            return doResolve(name, version);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    private ProjectVersionWrapper doResolve(final String name, final String version) throws MojoExecutionException {
+        // use the closest version, ie the snapshot
+        final List<String> candidates =
+                version.endsWith("-SNAPSHOT") ? singletonList(version) : asList(version, version + "-SNAPSHOT");
+        final List<FutureTask<ProjectVersionWrapper>> lookups = new ArrayList<>(candidates.size());
+        for (final String candidate : candidates) {
+            if (candidate.equals(version)) {
+                lookups.add(new FutureTask<>(() -> projectService.getProjectVersion(name, candidate)));
+                continue;
+            }
+            final boolean missing = missingVersions != null && missingVersions.isMissing(key(name, candidate));
+            if (missingVersions != null) {
+                metrics.cache("missingVersion", missing);
+            }
+            if (missing) {
+                log.debug(String.format("%s %s is known as missing, skipping its lookup", name, candidate));
+                lookups.add(null);
+            } else {
+                lookups.add(new FutureTask<>(() -> projectService.getProjectVersion(name, candidate)));
+            }
+        }
+        // the preferred lookup runs in the current thread, the fallbacks in background
+        FutureTask<ProjectVersionWrapper> preferred = null;
+        for (final FutureTask<ProjectVersionWrapper> lookup : lookups) {
+            if (lookup == null) {
+                continue;
+            }
+            if (preferred == null) {
+                preferred = lookup;
+            } else {
+                LOOKUPS.execute(lookup);
+            }
+        }
+        if (preferred != null) {
+            preferred.run();
+        }
+
+        Throwable error = null;
+        for (int i = 0; i < candidates.size(); i++) {
+            final FutureTask<ProjectVersionWrapper> lookup = lookups.get(i);
+            if (lookup == null) {
+                continue;
+            }
+            try {
+                return lookup.get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException("Interrupted while looking up " + name, e);
+            } catch (final ExecutionException e) {
+                if (DoesNotExistException.class.isInstance(e.getCause()) && missingVersions != null && i > 0) {
+                    missingVersions.markMissing(key(name, candidates.get(i)));
+                }
+                if (error == null) {
+                    error = e.getCause();
+                }
+            }
+        }
+
+        if (!create) {
+            throw new MojoExecutionException(
+                    String.format("No project version %s %s (nor its snapshot) in %s", name, version, server), error);
+        }
+        try {
+            final ProjectVersionWrapper created = projectService.getProjectVersionAndCreateIfNeeded(name, version);
+            if (missingVersions != null) {
+                missingVersions.markFound(key(name, version));
+            }
+            return created;
+        } catch (final IntegrationException e) {
+            final Throwable cause = error != null ? error : e;
+            throw new MojoExecutionException(cause.getMessage(), cause);
+        }
+    }
+
+    private String key(final String name, final String version) {
+        return MissingVersionCache.key(server, name, version);
+    }
+}
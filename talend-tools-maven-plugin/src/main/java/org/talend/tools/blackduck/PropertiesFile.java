@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.function.Predicate;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * A properties file of the shared cache directory, used by several builds (JVMs) at the same time. It is read
+ * without lock since it is only replaced atomically, the updates are serialized with a lock file and written to a
+ * unique temporary file before the move.
+ */
+class PropertiesFile {
+
+    private final Path file;
+
+    private final String comment;
+
+    private final Log log;
+
+    PropertiesFile(final Path file, final String comment, final Log log) {
+        this.file = file;
+        this.comment = comment;
+        this.log = log;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return the current content, empty if the file doesn't exist or can't be read.
+     */
+    Properties load() {
+        final Properties properties = new Properties();
+        if (Files.isRegularFile(file)) {
+            try (final InputStream stream = Files.newInputStream(file)) {
+                properties.load(stream);
+            } catch (final IOException e) {
+                log.debug("Can't read " + file + ": " + e.getMessage());
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Reads, updates and writes back the file, the other builds can't update it in between.
+     *
+     * @param updater modifies the current content, returns false if there is nothing to write.
+     */
+    void update(final Predicate<Properties> updater) throws IOException {
+        Files.createDirectories(file.getParent());
+        SharedCache.withLock(file.resolveSibling(file.getFileName() + ".lock"), () -> {
+            final Properties properties = load();
+            if (!updater.test(properties)) {
+                return null;
+            }
+            final Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                try (final OutputStream stream = Files.newOutputStream(tmp)) {
+                    properties.store(stream, comment);
+                }
+                SharedCache.move(tmp, file);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            return null;
+        });
+    }
+}
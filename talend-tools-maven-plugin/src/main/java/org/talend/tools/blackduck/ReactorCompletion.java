@@ -0,0 +1,168 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Session scoped completion of the reactor modules, fed by {@link ReactorCompletionListener}. An "at the end"
+ * execution runs once every module of the build either reached the mojo or finished (modules not binding it), so
+ * skipped (-pl, -rf) modules are never waited for and parallel (-T) builds fire as soon as the last input is ready.
+ * Only atomic operations are used, the builder threads never wait for each other.
+ */
+class ReactorCompletion {
+
+    private final Set<String> finished = ConcurrentHashMap.newKeySet();
+
+    private final ConcurrentMap<String, Tracker> trackers = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean failed = new AtomicBoolean();
+
+    private volatile boolean active;
+
+    static ReactorCompletion of(final MavenSession session) {
+        final Map<String, Object> data = session.getRequest().getData();
+        synchronized (data) {
+            return ReactorCompletion.class
+                    .cast(data.computeIfAbsent(ReactorCompletion.class.getName(), k -> new ReactorCompletion()));
+        }
+    }
+
+    /**
+     * @return true if the listener is registered (the plugin is an extension) and saw the build start.
+     */
+    boolean isActive() {
+        return active;
+    }
+
+    void onProjectStart() {
+        active = true;
+    }
+
+    /**
+     * Marks a module as done, if it was the last one awaited the deferred executions run in the calling thread.
+     */
+    void onProjectEnd(final MavenProject project, final boolean success)
+            throws MojoExecutionException, MojoFailureException {
+        if (!success) {
+            failed.set(true);
+        }
+        final String id = project.getId();
+        finished.add(id);
+        for (final Tracker tracker : trackers.values()) {
+            tracker.settle(id);
+        }
+    }
+
+    /**
+     * @param name the execution key, one tracker per mojo.
+     * @param projects the modules of the build.
+     */
+    Tracker tracker(final String name, final List<MavenProject> projects, final Log log) {
+        final Tracker created = new Tracker(projects, log);
+        final Tracker existing = trackers.putIfAbsent(name, created);
+        if (existing != null) {
+            return existing;
+        }
+        // the modules which ended before the registration, the later ones are notified
+        for (final String id : finished) {
+            created.remove(id); // can't complete the reactor, the calling module is still running
+        }
+        return created;
+    }
+
+    interface Execution {
+
+        void run() throws MojoExecutionException, MojoFailureException;
+    }
+
+    class Tracker {
+
+        private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+        private final AtomicInteger remaining;
+
+        private final AtomicReference<Execution> deferred = new AtomicReference<>();
+
+        private final Log log;
+
+        private Tracker(final List<MavenProject> projects, final Log log) {
+            projects.forEach(it -> pending.add(it.getId()));
+            this.remaining = new AtomicInteger(pending.size());
+            this.log = log;
+        }
+
+        /**
+         * The mojo reached the given module: the execution runs now if it was the last module awaited, else it is
+         * deferred to the completion of the last one (the latest arrival wins, they are equivalent).
+         */
+        void arrive(final MavenProject project, final Execution execution)
+                throws MojoExecutionException, MojoFailureException {
+            deferred.set(execution);
+            if (!settle(project.getId())) {
+                log.debug(String.format("Not yet at the last project, waiting for %d other modules", remaining.get()));
+            }
+        }
+
+        /**
+         * Defers the execution to the end of the last module awaited without marking any module as reached, it runs
+         * now if the reactor already completed (called while the last module ends).
+         */
+        void defer(final Execution execution) throws MojoExecutionException, MojoFailureException {
+            deferred.set(execution);
+            if (remaining.get() == 0) {
+                final Execution current = deferred.getAndSet(null);
+                if (current != null) {
+                    current.run();
+                }
+            }
+        }
+
+        // returns true if this call completed the reactor, exactly one call does
+        private boolean settle(final String id) throws MojoExecutionException, MojoFailureException {
+            if (!remove(id)) {
+                return false;
+            }
+            final Execution execution = deferred.getAndSet(null);
+            if (execution == null) {
+                return true;
+            }
+            if (failed.get()) {
+                log.warn("Some modules failed, skipping the execution");
+                return true;
+            }
+            execution.run();
+            return true;
+        }
+
+        private boolean remove(final String id) {
+            return pending.remove(id) && remaining.decrementAndGet() == 0;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.maven.execution.ProjectExecutionEvent;
+import org.apache.maven.execution.ProjectExecutionListener;
+import org.apache.maven.lifecycle.LifecycleExecutionException;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Feeds {@link ReactorCompletion} with the modules actually executed by the build. Only active when the plugin is
+ * declared with {@code <extensions>true</extensions>}, otherwise the mojos count their executions.
+ */
+@Singleton
+@Named("talend-tools-reactor-completion")
+public class ReactorCompletionListener implements ProjectExecutionListener {
+
+    private final Logger logger = LoggerFactory.getLogger(ReactorCompletionListener.class);
+
+    @Override
+    public void beforeProjectExecution(final ProjectExecutionEvent event) {
+        ReactorCompletion.of(event.getSession()).onProjectStart();
+    }
+
+    @Override
+    public void beforeProjectLifecycleExecution(final ProjectExecutionEvent event) {
+        // no-op
+    }
+
+    @Override
+    public void afterProjectExecutionSuccess(final ProjectExecutionEvent event) throws LifecycleExecutionException {
+        try {
+            ReactorCompletion.of(event.getSession()).onProjectEnd(event.getProject(), true);
+        } catch (final MojoExecutionException | MojoFailureException e) {
+            throw new LifecycleExecutionException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void afterProjectExecutionFailure(final ProjectExecutionEvent event) {
+        try {
+            ReactorCompletion.of(event.getSession()).onProjectEnd(event.getProject(), false);
+        } catch (final MojoExecutionException | MojoFailureException e) { // can't happen, nothing runs once failed
+            logger.error(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Aggregates the risk counters of a components report in a single streaming pass. Only the counters are kept in
+ * memory so the heap usage doesn't depend on the size of the BOM.
+ *
+ * The expected content is the one of a report {@code content} link:
+ * {@code {"reportContent":[{"fileContent":{"aggregateBomViewEntries":[{"producerProject":{"name":...},
+ * "producerReleases":[{"version":...}],"riskProfile":{"categories":{"LICENSE":{"HIGH":1,...},...}}},...]}}]}}.
+ */
+class ReportAggregator {
+
+    enum Category {
+        VULNERABILITY,
+        ACTIVITY,
+        VERSION,
+        LICENSE,
+        OPERATIONAL
+    }
+
+    enum Severity {
+        HIGH,
+        MEDIUM,
+        LOW,
+        OK,
+        UNKNOWN
+    }
+
+    private static final Category[] CATEGORIES = Category.values();
+
+    private static final Severity[] SEVERITIES = Severity.values();
+
+    private final int[] totals = new int[CATEGORIES.length * SEVERITIES.length];
+
+    // reused for each entry
+    private final int[] entryCounts = new int[totals.length];
+
+    private int entries;
+
+    static int index(final Category category, final Severity severity) {
+        return category.ordinal() * SEVERITIES.length + severity.ordinal();
+    }
+
+    int get(final Category category, final Severity severity) {
+        return totals[index(category, severity)];
+    }
+
+    /**
+     * @return the counters indexed with {@link #index}.
+     */
+    int[] getTotals() {
+        return totals.clone();
+    }
+
+    int getEntries() {
+        return entries;
+    }
+
+    /**
+     * @param listener optional, notified for each entry with its counters (indexed with {@link #index}), the array
+     * is reused so it must not be kept.
+     */
+    void aggregate(final Reader content, final EntryListener listener) throws IOException {
+        try (final JsonReader reader = new JsonReader(content)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("reportContent".equals(reader.nextName())) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readReportContent(reader, listener);
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+    }
+
+    private void readReportContent(final JsonReader reader, final EntryListener listener) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("fileContent".equals(reader.nextName())) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if ("aggregateBomViewEntries".equals(reader.nextName())) {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            readEntry(reader, listener);
+                        }
+                        reader.endArray();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readEntry(final JsonReader reader, final EntryListener listener) throws IOException {
+        Arrays.fill(entryCounts, 0);
+        String component = null;
+        String version = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if ("riskProfile".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                readRiskProfile(reader);
+            } else if (listener != null && "producerProject".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                component = readString(reader, "name");
+            } else if (listener != null && "producerReleases".equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                        final String release = readString(reader, "version");
+                        if (version == null) {
+                            version = release;
+                        }
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        for (int i = 0; i < totals.length; i++) {
+            totals[i] += entryCounts[i];
+        }
+        entries++;
+        if (listener != null) {
+            listener.onEntry(component, version, entryCounts);
+        }
+    }
+
+    private void readRiskProfile(final JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("categories".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    final Category category = find(CATEGORIES, reader.nextName());
+                    if (category == null || reader.peek() != JsonToken.BEGIN_OBJECT) {
+                        reader.skipValue();
+                        continue;
+                    }
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        final Severity severity = find(SEVERITIES, reader.nextName());
+                        if (severity == null || reader.peek() != JsonToken.NUMBER) {
+                            reader.skipValue();
+                            continue;
+                        }
+                        entryCounts[index(category, severity)] += reader.nextInt();
+                    }
+                    reader.endObject();
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static String readString(final JsonReader reader, final String field) throws IOException {
+        String value = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (field.equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+                value = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return value;
+    }
+
+    private static <T extends Enum<T>> T find(final T[] values, final String name) {
+        for (final T value : values) { // tiny arrays, faster than valueOf and its exception
+            if (value.name().equals(name)) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    interface EntryListener {
+
+        void onEntry(String component, String version, int[] counts);
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * On disk cache of the violation counters computed from a blackduck report. An entry is keyed by the project version
+ * and is only valid for the BOM last update it was computed from.
+ */
+class ReportCache {
+
+    private static final String BOM_LAST_UPDATE = ".bomLastUpdatedAt";
+
+    private static final String COUNT = ".count.";
+
+    private final PropertiesFile file;
+
+    private final Log log;
+
+    ReportCache(final Path file, final Log log) {
+        this.file = new PropertiesFile(file, "blackduck report cache", log);
+        this.log = log;
+    }
+
+    /**
+     * @return the cached counters or null if the BOM changed since they were computed.
+     */
+    Map<String, Integer> get(final String projectVersion, final long bomLastUpdatedAt) {
+        final Properties properties = file.load();
+        if (!Long.toString(bomLastUpdatedAt).equals(properties.getProperty(projectVersion + BOM_LAST_UPDATE))) {
+            return null;
+        }
+        final String prefix = projectVersion + COUNT;
+        final Map<String, Integer> counts = new TreeMap<>();
+        for (final String key : properties.stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                try {
+                    counts.put(key.substring(prefix.length()), Integer.parseInt(properties.getProperty(key)));
+                } catch (final NumberFormatException nfe) {
+                    return null;
+                }
+            }
+        }
+        return counts.isEmpty() ? null : counts;
+    }
+
+    void put(final String projectVersion, final long bomLastUpdatedAt, final Map<String, Integer> counts) {
+        final String prefix = projectVersion + COUNT;
+        try {
+            file.update(properties -> {
+                properties.stringPropertyNames().stream().filter(it -> it.startsWith(prefix)).forEach(
+                        properties::remove);
+                properties.setProperty(projectVersion + BOM_LAST_UPDATE, Long.toString(bomLastUpdatedAt));
+                counts.forEach((k, v) -> properties.setProperty(prefix + k, Integer.toString(v)));
+                return true;
+            });
+        } catch (final IOException e) {
+            log.warn("Can't store " + file.getFile() + ": " + e.getMessage());
+        }
+    }
+}
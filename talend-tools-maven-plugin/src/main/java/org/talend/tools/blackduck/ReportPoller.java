@@ -0,0 +1,240 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+import com.blackducksoftware.integration.exception.IntegrationException;
+import com.blackducksoftware.integration.hub.api.report.ReportCategoriesEnum;
+import com.blackducksoftware.integration.hub.api.report.ReportRequestService;
+import com.blackducksoftware.integration.hub.model.enumeration.ReportFormatEnum;
+import com.blackducksoftware.integration.hub.model.view.ProjectVersionView;
+import com.blackducksoftware.integration.hub.model.view.ReportView;
+
+/**
+ * Starts the components report of a version and waits for its generation. The polling interval grows exponentially
+ * up to a maximum and the wait is bounded by a deadline. A report already being generated for the same version by a
+ * parallel build (a {@code .inflight} file in the shared directory) is reused instead of starting a new one if it was
+ * requested after the last update of the BOM.
+ */
+class ReportPoller {
+
+    private static final long INITIAL_INTERVAL = 500;
+
+    private final ReportRequestService reportService;
+
+    private final Path inflightDirectory;
+
+    private final long timeout;
+
+    private final long maxInterval;
+
+    private final BuildMetrics metrics;
+
+    private final Log log;
+
+    /**
+     * @param inflightDirectory optional, where the reports being generated are registered to be shared.
+     * @param timeout the maximum time (ms) to wait for a report.
+     * @param maxInterval the maximum time (ms) between two polls.
+     */
+    ReportPoller(final ReportRequestService reportService, final Path inflightDirectory, final long timeout,
+            final long maxInterval, final BuildMetrics metrics, final Log log) {
+        this.reportService = reportService;
+        this.inflightDirectory = inflightDirectory;
+        this.timeout = timeout;
+        this.maxInterval = Math.max(INITIAL_INTERVAL, maxInterval);
+        this.metrics = metrics;
+        this.log = log;
+    }
+
+    /**
+     * @return true if the reports are shared with the other builds.
+     */
+    boolean isShared() {
+        return inflightDirectory != null;
+    }
+
+    /**
+     * @param reuse can an in-flight report of another build be used.
+     * @param bomLastUpdatedAt optional, the last update of the BOM of the version, an in-flight report is only reused
+     * if it was requested after it (never when it is unknown).
+     */
+    Report start(final ProjectVersionView versionView, final boolean reuse, final Date bomLastUpdatedAt)
+            throws MojoExecutionException {
+        try {
+            if (inflightDirectory == null) {
+                return new Report(startReport(versionView), null, false);
+            }
+            final String versionHref = reportService.getHref(versionView);
+            final String id = UUID.nameUUIDFromBytes(versionHref.getBytes(UTF_8)).toString();
+            final Path inflight = inflightDirectory.resolve(id + ".inflight");
+            return SharedCache.withLock(inflightDirectory.resolve(id + ".lock"), () -> {
+                if (reuse && bomLastUpdatedAt != null) {
+                    final String existing = readInflight(inflight, bomLastUpdatedAt.getTime());
+                    if (existing != null) {
+                        log.info("Reusing the report being generated by another build: " + existing);
+                        metrics.increment("report.reused", 1);
+                        return new Report(existing, null, true);
+                    }
+                }
+                final long requestedAt = System.currentTimeMillis();
+                final String url;
+                try {
+                    url = startReport(versionView);
+                } catch (final IntegrationException e) {
+                    throw new IOException(e);
+                }
+                writeInflight(inflight, url, requestedAt);
+                return new Report(url, inflight, false);
+            });
+        } catch (final IntegrationException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        } catch (final IOException e) {
+            final Throwable cause = IntegrationException.class.isInstance(e.getCause()) ? e.getCause() : e;
+            throw new MojoExecutionException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * @return the content url of the generated report.
+     */
+    String await(final Report report) throws IntegrationException, MojoExecutionException {
+        final long start = System.currentTimeMillis();
+        final long deadline = start + timeout;
+        long interval = INITIAL_INTERVAL;
+        long pollDuration = 0;
+        int polls = 0;
+        while (true) {
+            final long pollStart = System.nanoTime();
+            final ReportView view = reportService.getItem(report.url, ReportView.class);
+            final long pollNanos = System.nanoTime() - pollStart;
+            metrics.record("report.poll", pollNanos);
+            final long latency = TimeUnit.NANOSECONDS.toMillis(pollNanos);
+            pollDuration += latency;
+            polls++;
+            log.debug(
+                    String.format("Report poll #%d took %dms, finished: %s", polls, latency, view.finishedAt != null));
+            if (view.finishedAt != null) {
+                metrics.record("report.generation", TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - start));
+                log.info(String.format("Report generated in %dms, %d polls (%dms average latency)",
+                        System.currentTimeMillis() - start, polls, pollDuration / polls));
+                return reportService.getFirstLink(view, "content");
+            }
+            final long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                throw new MojoExecutionException(String.format("Report %s not generated after %ds (%d polls)",
+                        report.url, timeout / 1000, polls));
+            }
+            try {
+                Thread.sleep(Math.min(interval, remaining));
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException("Interrupted while waiting for report " + report.url, e);
+            }
+            interval = Math.min(interval * 2, maxInterval);
+        }
+    }
+
+    /**
+     * Deletes the report if it was started by this build, a reused report belongs to its owner.
+     */
+    void release(final Report report) {
+        if (report.reused) {
+            return;
+        }
+        if (report.inflight != null) {
+            try {
+                Files.deleteIfExists(report.inflight);
+            } catch (final IOException e) {
+                log.debug("Can't delete " + report.inflight + ": " + e.getMessage());
+            }
+        }
+        try {
+            reportService.deleteHubReport(report.url);
+        } catch (final IntegrationException e) {
+            log.debug("Can't delete report " + report.url + ": " + e.getMessage());
+        }
+    }
+
+    private String startReport(final ProjectVersionView versionView) throws IntegrationException {
+        return reportService.startGeneratingHubReport(versionView, ReportFormatEnum.JSON,
+                new ReportCategoriesEnum[] { ReportCategoriesEnum.COMPONENTS });
+    }
+
+    // an in-flight report older than the timeout is considered abandoned, one requested before the BOM update is stale
+    private String readInflight(final Path inflight, final long bomLastUpdatedAt) {
+        if (!Files.isRegularFile(inflight)) {
+            return null;
+        }
+        final Properties properties = new Properties();
+        try (final InputStream stream = Files.newInputStream(inflight)) {
+            properties.load(stream);
+            final long startedAt = Long.parseLong(properties.getProperty("startedAt", "0"));
+            if (startedAt <= bomLastUpdatedAt) {
+                log.debug(String.format("The report being generated by another build was requested before the BOM"
+                        + " update (%s), requesting a new one", new Date(bomLastUpdatedAt)));
+                return null;
+            }
+            return startedAt + timeout > System.currentTimeMillis() ? properties.getProperty("url") : null;
+        } catch (final IOException | NumberFormatException e) {
+            log.debug("Can't read " + inflight + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeInflight(final Path inflight, final String url, final long requestedAt) throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty("url", url);
+        properties.setProperty("startedAt", Long.toString(requestedAt));
+        Files.createDirectories(inflight.getParent());
+        try (final OutputStream stream = Files.newOutputStream(inflight)) {
+            properties.store(stream, "blackduck report being generated");
+        }
+    }
+
+    static class Report {
+
+        private final String url;
+
+        private final Path inflight;
+
+        private final boolean reused;
+
+        private Report(final String url, final Path inflight, final boolean reused) {
+            this.url = url;
+            this.inflight = inflight;
+            this.reused = reused;
+        }
+
+        boolean isReused() {
+            return reused;
+        }
+    }
+}
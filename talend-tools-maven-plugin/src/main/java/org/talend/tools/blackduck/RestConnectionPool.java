@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecutionException;
+
+import com.blackducksoftware.integration.hub.rest.CredentialsRestConnection;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * Session scoped authenticated connections. The connections are created (and authenticated) once per server, user
+ * and trust mode and shared by all the mojos of the build, so the TLS handshakes, keep-alive connections and the
+ * authentication cookie/token are reused. An expired authentication is renewed by the connection itself (on a 401).
+ * The connections are used concurrently (parallel builds, batch validations), the factory must create
+ * {@link SharedRestConnection}s.
+ */
+class RestConnectionPool {
+
+    private final Map<String, CredentialsRestConnection> connections = new HashMap<>();
+
+    static RestConnectionPool of(final MavenSession session) {
+        final Map<String, Object> data = session.getRequest().getData();
+        synchronized (data) {
+            return RestConnectionPool.class
+                    .cast(data.computeIfAbsent(RestConnectionPool.class.getName(), k -> new RestConnectionPool()));
+        }
+    }
+
+    /**
+     * Releases the pool of the session if any.
+     */
+    static void release(final MavenSession session) {
+        final Map<String, Object> data = session.getRequest().getData();
+        final Object pool;
+        synchronized (data) {
+            pool = data.remove(RestConnectionPool.class.getName());
+        }
+        if (RestConnectionPool.class.isInstance(pool)) {
+            RestConnectionPool.class.cast(pool).close();
+        }
+    }
+
+    synchronized CredentialsRestConnection get(final String url, final String username, final String password,
+            final boolean alwaysTrustServerCertificate, final Factory factory) throws MojoExecutionException {
+        // the password is only used to not reuse a connection if it changes, no need to keep it in clear
+        final String key = url + '|' + username + '|' + (password == null ? "" : SharedCache.sha256(password)) + '|'
+                + alwaysTrustServerCertificate;
+        CredentialsRestConnection connection = connections.get(key);
+        if (connection == null) {
+            connection = factory.create();
+            connections.put(key, connection);
+        }
+        return connection;
+    }
+
+    // releases the idle keep-alive connections
+    private synchronized void close() {
+        connections
+                .values()
+                .stream()
+                .map(CredentialsRestConnection::getClient)
+                .filter(it -> it != null)
+                .map(OkHttpClient::connectionPool)
+                .forEach(it -> it.evictAll());
+        connections.clear();
+    }
+
+    interface Factory {
+
+        CredentialsRestConnection create() throws MojoExecutionException;
+    }
+}
@@ -0,0 +1,430 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.shared.utils.io.FileUtils;
+
+/**
+ * Downloads scan.cli.zip splitting it in HTTP range chunks fetched in parallel. The progress of each chunk is persisted
+ * in a sidecar file (zip + ".parts") to be able to resume an interrupted download. If the server does not support
+ * ranges it falls back on a plain single stream download.
+ */
+class ScanCliDownloader {
+
+    private static final int BUFFER_SIZE = 819200;
+
+    private static final int CONNECT_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(30);
+
+    private static final int READ_TIMEOUT = (int) TimeUnit.MINUTES.toMillis(2);
+
+    private static final int MAX_CHUNK_ATTEMPTS = 3;
+
+    // .parts file: total length, chunk size, the progress of each chunk then the validator (etag and last-modified)
+    private static final int HEADER_SIZE = 2 * Long.BYTES;
+
+    private final Log log;
+
+    private final int threads;
+
+    private final long chunkSize;
+
+    ScanCliDownloader(final Log log, final int threads, final long chunkSize) {
+        this.log = log;
+        this.threads = Math.max(1, threads);
+        this.chunkSize = Math.max(BUFFER_SIZE, chunkSize);
+    }
+
+    File download(final String url, final File zip) throws IOException {
+        zip.getParentFile().mkdirs();
+        final long start = System.nanoTime();
+
+        final URL source = new URL(url);
+        final HttpURLConnection probe = HttpURLConnection.class.cast(source.openConnection());
+        final long length;
+        final boolean ranges;
+        final String validator;
+        try {
+            probe.setRequestMethod("HEAD");
+            probe.setConnectTimeout(CONNECT_TIMEOUT);
+            probe.setReadTimeout(READ_TIMEOUT);
+            length = probe.getContentLengthLong();
+            ranges = probe.getResponseCode() == HttpURLConnection.HTTP_OK
+                    && "bytes".equalsIgnoreCase(probe.getHeaderField("Accept-Ranges"));
+            final String etag = probe.getHeaderField("ETag");
+            final String lastModified = probe.getHeaderField("Last-Modified");
+            // without any of them a changed remote file can't be detected so a partial download is never resumed
+            validator = etag == null && lastModified == null ? null
+                    : String.valueOf(etag) + '\n' + String.valueOf(lastModified);
+        } finally {
+            probe.disconnect();
+        }
+
+        if (!ranges || length <= chunkSize || threads == 1) {
+            log.debug(
+                    String.format("Using a single stream to download %s (ranges=%s, length=%d)", url, ranges, length));
+            singleStream(source, zip);
+        } else {
+            ranged(source, zip, length, validator);
+        }
+
+        final long end = System.nanoTime();
+        log.info(String.format("Downloaded scan.cli.zip in %d seconds", TimeUnit.NANOSECONDS.toSeconds(end - start)));
+        return zip;
+    }
+
+    /**
+     * Pipelined mode: the bytes coming from the network are extracted on the fly in destination and teed to archive in
+     * the same pass.
+     */
+    File downloadAndExtract(final String url, final File archive, final File destination) throws IOException {
+        archive.getParentFile().mkdirs();
+        log.info("Downloading and extracting scan.cli.zip, can take some time...");
+        final long start = System.nanoTime();
+        final HttpURLConnection connection = HttpURLConnection.class.cast(new URL(url).openConnection());
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        boolean success = false;
+        try (final OutputStream archiveStream = new BufferedOutputStream(new FileOutputStream(archive), BUFFER_SIZE);
+                final InputStream inputStream = connection.getInputStream()) {
+            final long length = connection.getContentLengthLong();
+            final TeeInputStream tee = new TeeInputStream(new BufferedInputStream(inputStream, BUFFER_SIZE),
+                    archiveStream, new Progress(length, new AtomicLong()));
+            ZipExtractor.unzip(tee, destination, true);
+            tee.drain(); // the central directory is not read by ZipInputStream but must be in the cached archive
+            if (length >= 0 && tee.count != length) {
+                throw new IOException(String.format("Truncated scan.cli.zip: %d/%d bytes", tee.count, length));
+            }
+            success = true;
+        } finally {
+            connection.disconnect();
+            if (!success) {
+                archive.delete();
+                FileUtils.deleteDirectory(destination);
+            }
+        }
+        final long end = System.nanoTime();
+        log.info(String.format("Downloaded and extracted scan.cli.zip in %d seconds",
+                TimeUnit.NANOSECONDS.toSeconds(end - start)));
+        return archive;
+    }
+
+    private void ranged(final URL source, final File zip, final long length, final String validator)
+            throws IOException {
+        final int chunks = (int) ((length + chunkSize - 1) / chunkSize);
+        final File parts = new File(zip.getParentFile(), zip.getName() + ".parts");
+        final long[] progress = loadProgress(parts, zip, length, validator, chunks);
+        final AtomicLong downloaded = new AtomicLong();
+        for (final long done : progress) {
+            downloaded.addAndGet(done);
+        }
+        if (downloaded.get() > 0) {
+            log.info(String.format("Resuming scan.cli.zip download at %d/%d bytes", downloaded.get(), length));
+        }
+        log.info(String.format("Downloading scan.cli.zip in %d chunks using %d threads, can take some time...", chunks,
+                threads));
+
+        final ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, chunks), new ThreadFactory());
+        try (final FileChannel data = FileChannel.open(zip.toPath(), CREATE, WRITE);
+                final FileChannel partsChannel = FileChannel.open(parts.toPath(), READ, WRITE)) {
+            final Progress tracker = new Progress(length, downloaded);
+            final List<Future<?>> futures = new ArrayList<>(chunks);
+            for (int i = 0; i < chunks; i++) {
+                final int index = i;
+                final long from = index * chunkSize;
+                final long to = Math.min(length, from + chunkSize) - 1;
+                if (from + progress[index] > to) {
+                    continue;
+                }
+                futures.add(pool.submit(() -> {
+                    fetchChunk(source, data, partsChannel, index, from, to, progress[index], tracker);
+                    return null;
+                }));
+            }
+            for (final Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                } catch (final ExecutionException e) {
+                    throw new IOException("Can't download scan.cli.zip, rerun the build to resume it", e.getCause());
+                }
+            }
+            data.truncate(length);
+            data.force(true);
+        } finally {
+            pool.shutdownNow();
+        }
+        if (!parts.delete()) {
+            parts.deleteOnExit();
+        }
+    }
+
+    private void fetchChunk(final URL source, final FileChannel data, final FileChannel parts, final int index,
+            final long from, final long to, final long alreadyDone, final Progress tracker) throws IOException {
+        long done = alreadyDone;
+        IOException lastError = null;
+        for (int attempt = 0; attempt < MAX_CHUNK_ATTEMPTS && from + done <= to; attempt++) {
+            final HttpURLConnection connection = HttpURLConnection.class.cast(source.openConnection());
+            try {
+                connection.setConnectTimeout(CONNECT_TIMEOUT);
+                connection.setReadTimeout(READ_TIMEOUT);
+                connection.setRequestProperty("Range", String.format("bytes=%d-%d", from + done, to));
+                if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+                    throw new IOException(String.format("Server didn't honor range request for chunk %d: HTTP %d",
+                            index, connection.getResponseCode()));
+                }
+                final byte[] buffer = new byte[BUFFER_SIZE];
+                final ByteBuffer counter = ByteBuffer.allocate(Long.BYTES);
+                try (final InputStream inputStream = connection.getInputStream()) {
+                    int read;
+                    while ((read = inputStream.read(buffer)) >= 0) {
+                        if (read == 0) {
+                            continue;
+                        }
+                        final ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                        long position = from + done;
+                        while (chunk.hasRemaining()) {
+                            position += data.write(chunk, position);
+                        }
+                        done += read;
+
+                        counter.clear();
+                        counter.putLong(done).flip();
+                        long counterPosition = HEADER_SIZE + index * (long) Long.BYTES;
+                        while (counter.hasRemaining()) {
+                            counterPosition += parts.write(counter, counterPosition);
+                        }
+                        tracker.update(read);
+                    }
+                }
+                lastError = null;
+            } catch (final IOException e) {
+                lastError = e;
+                log.debug(String.format("Chunk %d failed (attempt %d): %s", index, attempt + 1, e.getMessage()));
+            } finally {
+                connection.disconnect();
+            }
+        }
+        if (lastError != null) {
+            throw lastError;
+        }
+        if (from + done <= to) {
+            throw new IOException(String.format("Chunk %d is incomplete: %d/%d bytes", index, done, to - from + 1));
+        }
+    }
+
+    private long[] loadProgress(final File parts, final File zip, final long length, final String validator,
+            final int chunks) throws IOException {
+        final long[] progress = new long[chunks];
+        final byte[] validatorBytes = validator == null ? new byte[0] : validator.getBytes(UTF_8);
+        final int size = HEADER_SIZE + chunks * Long.BYTES + Integer.BYTES + validatorBytes.length;
+        if (validator == null) {
+            log.debug("No ETag nor Last-Modified for scan.cli.zip, the download can't be resumed");
+        } else if (parts.exists() && zip.exists()) {
+            try (final FileChannel channel = FileChannel.open(parts.toPath(), READ)) {
+                final ByteBuffer buffer = ByteBuffer.allocate(size);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // no-op
+                }
+                buffer.flip();
+                if (buffer.remaining() == buffer.capacity() && channel.size() == size && buffer.getLong() == length
+                        && buffer.getLong() == chunkSize) {
+                    for (int i = 0; i < chunks; i++) {
+                        progress[i] = Math.max(0, buffer.getLong());
+                    }
+                    if (buffer.getInt() == validatorBytes.length && Arrays.equals(validatorBytes,
+                            Arrays.copyOfRange(buffer.array(), buffer.position(), buffer.limit()))) {
+                        return progress;
+                    }
+                    Arrays.fill(progress, 0);
+                }
+            }
+            log.info("Previous scan.cli.zip partial download doesn't match the remote file anymore, restarting it");
+        }
+
+        try (final FileChannel channel = FileChannel.open(parts.toPath(), CREATE, WRITE)) {
+            channel.truncate(0);
+            final ByteBuffer buffer = ByteBuffer.allocate(size);
+            buffer.putLong(length).putLong(chunkSize);
+            buffer.position(HEADER_SIZE + chunks * Long.BYTES);
+            buffer.putInt(validatorBytes.length).put(validatorBytes);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        return progress;
+    }
+
+    private void singleStream(final URL url, final File zip) throws IOException {
+        log.info("Downloading scan.cli.zip, can take some time...");
+        final HttpURLConnection connection = HttpURLConnection.class.cast(url.openConnection());
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        try (final OutputStream os = new BufferedOutputStream(new FileOutputStream(zip), BUFFER_SIZE)) {
+            final long length = connection.getContentLengthLong();
+            final Progress tracker = new Progress(length, new AtomicLong());
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            final InputStream inputStream = connection.getInputStream();
+            while ((read = inputStream.read(buffer)) >= 0) {
+                if (read > 0) {
+                    os.write(buffer, 0, read);
+                    tracker.update(read);
+                }
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static class Progress {
+
+        private final long length;
+
+        private final AtomicLong downloaded;
+
+        private final AtomicInteger percentage = new AtomicInteger(-1);
+
+        private Progress(final long length, final AtomicLong downloaded) {
+            this.length = length;
+            this.downloaded = downloaded;
+        }
+
+        private void update(final int read) {
+            if (length <= 0) {
+                return;
+            }
+            final long current = downloaded.addAndGet(read);
+            final int pcTracker = (int) (current * 100 / length);
+            if (percentage.get() < pcTracker) {
+                synchronized (this) {
+                    if (percentage.get() < pcTracker) {
+                        percentage.set(pcTracker);
+                        System.out.printf("Downloading scan.cli.zip - %d%%\r", pcTracker);
+                        System.out.flush();
+                    }
+                }
+            }
+        }
+    }
+
+    private static class TeeInputStream extends FilterInputStream {
+
+        private final OutputStream copy;
+
+        private final Progress progress;
+
+        private long count;
+
+        private TeeInputStream(final InputStream in, final OutputStream copy, final Progress progress) {
+            super(in);
+            this.copy = copy;
+            this.progress = progress;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int read = super.read();
+            if (read >= 0) {
+                copy.write(read);
+                onRead(1);
+            }
+            return read;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int read = super.read(b, off, len);
+            if (read > 0) {
+                copy.write(b, off, read);
+                onRead(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException { // ensure skipped bytes are teed too
+            final byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            final int read = read(buffer, 0, buffer.length);
+            return Math.max(0, read);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            // no-op, the underlying stream is owned by the caller
+        }
+
+        private void drain() throws IOException {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            while (read(buffer, 0, buffer.length) >= 0) {
+                // no-op
+            }
+        }
+
+        private void onRead(final int read) {
+            count += read;
+            progress.update(read);
+        }
+    }
+
+    private static class ThreadFactory implements java.util.concurrent.ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread thread = new Thread(r, "scan-cli-download-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
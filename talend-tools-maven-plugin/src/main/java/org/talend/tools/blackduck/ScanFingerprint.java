@@ -0,0 +1,252 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyList;
+import static java.util.stream.Collectors.toList;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.resolver.filter.ScopeArtifactFilter;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Fingerprint of what a hub-detect scan depends on: the resolved dependency graph of the reactor (for the scanned
+ * scope), the source tree (without the excluded and build directories) and the configuration. It is stored with the
+ * outputs of a successful scan to skip the next one if nothing changed.
+ */
+class ScanFingerprint {
+
+    private static final String FILE_NAME = "hub-detect.fingerprint";
+
+    private static final String INDEX_NAME = "file-hashes.index";
+
+    private static final String DELTA_NAME = "changed-files.txt";
+
+    private final Path file;
+
+    private final Log log;
+
+    private final String value;
+
+    ScanFingerprint(final File outputPath, final String value, final Log log) {
+        this.file = outputPath.toPath().resolve(FILE_NAME);
+        this.value = value;
+        this.log = log;
+    }
+
+    /**
+     * @return the previous successful execution with the same fingerprint or null.
+     */
+    Properties findPreviousExecution() {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        final Properties properties = new Properties();
+        try (final InputStream stream = Files.newInputStream(file)) {
+            properties.load(stream);
+        } catch (final IOException e) {
+            log.debug("Can't read " + file + ": " + e.getMessage());
+            return null;
+        }
+        return value.equals(properties.getProperty("fingerprint")) ? properties : null;
+    }
+
+    void store(final int exitStatus) {
+        final Properties properties = new Properties();
+        properties.setProperty("fingerprint", value);
+        properties.setProperty("exitStatus", Integer.toString(exitStatus));
+        properties.setProperty("timestamp", Long.toString(System.currentTimeMillis()));
+        try {
+            Files.createDirectories(file.getParent());
+            try (final OutputStream stream = Files.newOutputStream(file)) {
+                properties.store(stream, "hub-detect fingerprint");
+            }
+        } catch (final IOException e) {
+            log.warn("Can't store " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param dependencies the resolved artifacts (with their dependency trail) of each reactor project.
+     */
+    static ScanFingerprint compute(final File outputPath, final MavenProject rootProject,
+            final Map<MavenProject, Set<Artifact>> dependencies, final String scope,
+            final Collection<String> exclusions, final Map<String, String> config, final List<String> args,
+            final boolean useHashIndex, final BuildMetrics metrics, final Log log) throws IOException {
+        final MessageDigest digest = SharedCache.newSha256();
+        final ScopeArtifactFilter filter = new ScopeArtifactFilter(scope);
+
+        new TreeMap<>(config).forEach((k, v) -> update(digest, "config:" + k + '=' + v));
+        args.forEach(arg -> update(digest, "arg:" + arg));
+
+        final List<MavenProject> projects =
+                dependencies.keySet().stream().sorted(Comparator.comparing(MavenProject::getId)).collect(toList());
+        for (final MavenProject project : projects) {
+            update(digest, "project:" + project.getId());
+            final Set<Artifact> artifacts = dependencies.get(project);
+            for (final String dependency : artifacts
+                    .stream()
+                    .filter(filter::include)
+                    .map(ScanFingerprint::describe)
+                    .sorted()
+                    .collect(toList())) {
+                update(digest, "dependency:" + dependency);
+            }
+        }
+
+        final Path root = rootProject.getBasedir().toPath().toAbsolutePath().normalize();
+        final List<Path> ignored = projects
+                .stream()
+                .map(p -> new File(p.getBuild().getDirectory()).toPath().toAbsolutePath().normalize())
+                .collect(toList());
+        final ExclusionMatcher excludedPatterns = new ExclusionMatcher(exclusions == null ? emptyList() : exclusions);
+        final Map<Path, BasicFileAttributes> files = new TreeMap<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) {
+                final String name = dir.getFileName() == null ? "" : dir.getFileName().toString();
+                if (ignored.contains(dir) || (!dir.equals(root) && name.startsWith("."))
+                        || excludedPatterns.matches(root, dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    files.put(file, attrs);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        if (useHashIndex) {
+            final Path output = outputPath.toPath();
+            SharedCache.withLock(output.resolve(INDEX_NAME + ".lock"), () -> {
+                hashFiles(digest, root, files, output, metrics, log);
+                return null;
+            });
+        } else {
+            for (final Path source : files.keySet()) {
+                update(digest, "file:" + relativize(root, source) + '=' + SharedCache.sha256(source));
+            }
+        }
+        log.debug(String.format("Fingerprinted %d projects and %d files", projects.size(), files.size()));
+        return new ScanFingerprint(outputPath, SharedCache.toHex(digest.digest()), log);
+    }
+
+    // the unchanged files (same size and modification time) reuse the hash of the index
+    private static void hashFiles(final MessageDigest digest, final Path root,
+            final Map<Path, BasicFileAttributes> files, final Path output, final BuildMetrics metrics, final Log log)
+            throws IOException {
+        FileHashIndex index;
+        try {
+            index = FileHashIndex.open(output.resolve(INDEX_NAME), log);
+        } catch (final IOException e) {
+            log.warn("Can't open the file hash index, hashing all the files: " + e.getMessage());
+            index = null;
+        }
+        for (final Map.Entry<Path, BasicFileAttributes> file : files.entrySet()) {
+            final String relative = relativize(root, file.getKey());
+            String hash = null;
+            if (index != null) {
+                try {
+                    hash = index.hash(relative, file.getKey(), file.getValue());
+                } catch (final IOException e) {
+                    log.warn("Can't use the file hash index anymore: " + e.getMessage());
+                    index = null;
+                }
+            }
+            update(digest, "file:" + relative + '=' + (hash != null ? hash : SharedCache.sha256(file.getKey())));
+        }
+        if (index == null) {
+            return;
+        }
+        metrics.increment("cache.fileHash.hit", index.getHits());
+        metrics.increment("cache.fileHash.miss", files.size() - index.getHits());
+        if (index.isCreated()) {
+            log.debug("File hash index created with " + files.size() + " files");
+        } else {
+            writeDelta(output.resolve(DELTA_NAME), index, log);
+        }
+        try {
+            index.close();
+        } catch (final IOException e) {
+            log.warn("Can't update the file hash index: " + e.getMessage());
+        }
+    }
+
+    // what changed since the previous fingerprint, the removed files are only counted (the index stores path hashes)
+    private static void writeDelta(final Path delta, final FileHashIndex index, final Log log) {
+        final int removed = index.countRemoved();
+        log.info(String.format(
+                "%d files changed since the last fingerprint (%d added, %d modified, %d removed), "
+                        + "%d hashes reused",
+                index.getAdded().size() + index.getModified().size() + removed, index.getAdded().size(),
+                index.getModified().size(), removed, index.getHits()));
+        final StringBuilder content = new StringBuilder();
+        content.append(String.format("# %d added, %d modified, %d removed%n", index.getAdded().size(),
+                index.getModified().size(), removed));
+        index.getAdded().forEach(it -> content.append("A ").append(it).append(System.lineSeparator()));
+        index.getModified().forEach(it -> content.append("M ").append(it).append(System.lineSeparator()));
+        try {
+            Files.write(delta, content.toString().getBytes(UTF_8));
+        } catch (final IOException e) {
+            log.warn("Can't write " + delta + ": " + e.getMessage());
+        }
+    }
+
+    private static String relativize(final Path root, final Path file) {
+        return root.relativize(file).toString().replace(File.separatorChar, '/');
+    }
+
+    private static String describe(final Artifact artifact) {
+        final List<String> trail = artifact.getDependencyTrail();
+        final String parent = trail != null && trail.size() > 1 ? trail.get(trail.size() - 2) : "";
+        final String id = artifact.getId() + ':' + artifact.getScope() + "<-" + parent;
+        if (artifact.isSnapshot() && artifact.getFile() != null) { // same version can have another content
+            return id + '@' + artifact.getFile().length() + '/' + artifact.getFile().lastModified();
+        }
+        return id;
+    }
+
+    private static void update(final MessageDigest digest, final String value) {
+        digest.update(value.getBytes(UTF_8));
+        digest.update((byte) '\n');
+    }
+
+}
@@ -0,0 +1,266 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The minimal list of directories the signature scanner has to read, each one being a scan (and a code location) of
+ * hub-detect. The tree is walked once, in parallel (one fork/join task per directory), and the excluded directories
+ * are never entered. The manifest lists the biggest directories without any excluded descendant, a directory with
+ * both files and excluded content is listed as a whole (the scanner exclusions apply). If it exceeds the maximum
+ * number of paths, the deepest directories are listed as a whole until it fits. The ignored (build) directories
+ * under a listed one are returned as exclusion patterns relative to it.
+ */
+class ScanManifest {
+
+    private final List<Path> paths;
+
+    private final List<String> exclusionPatterns;
+
+    private final long files;
+
+    private final long excludedDirectories;
+
+    private ScanManifest(final List<Path> paths, final List<String> exclusionPatterns, final long files,
+            final long excludedDirectories) {
+        this.paths = paths;
+        this.exclusionPatterns = exclusionPatterns;
+        this.files = files;
+        this.excludedDirectories = excludedDirectories;
+    }
+
+    List<Path> getPaths() {
+        return paths;
+    }
+
+    /**
+     * @return the patterns excluding the ignored directories of the listed paths.
+     */
+    List<String> getExclusionPatterns() {
+        return exclusionPatterns;
+    }
+
+    long getFiles() {
+        return files;
+    }
+
+    long getExcludedDirectories() {
+        return excludedDirectories;
+    }
+
+    /**
+     * @param root the reference of the exclusion patterns.
+     * @param starts the directories to walk, under the root.
+     * @param ignored directories excluded whatever their name (build directories).
+     * @param maxPaths the maximum number of paths of the manifest.
+     */
+    static ScanManifest build(final Path root, final Collection<Path> starts, final ExclusionMatcher exclusions,
+            final Collection<Path> ignored, final int maxPaths) throws IOException {
+        final Walker walker = new Walker(root, exclusions, new HashSet<>(ignored));
+        final List<Node> nodes = new ArrayList<>(starts.size());
+        final ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+        try {
+            for (final Path start : starts) {
+                if (walker.isExcluded(start)) {
+                    walker.excluded.increment();
+                    continue;
+                }
+                nodes.add(pool.invoke(walker.new Walk(start, 0)));
+            }
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+
+        int total = nodes.stream().mapToInt(ScanManifest::count).sum();
+        if (total > maxPaths) {
+            final PriorityQueue<Node> mixed =
+                    new PriorityQueue<>(Comparator.<Node> comparingInt(it -> it.depth).reversed());
+            nodes.forEach(it -> collectMixed(it, mixed));
+            while (total > maxPaths && !mixed.isEmpty()) {
+                final Node node = mixed.poll();
+                total -= count(node) - 1;
+                node.collapsed = true;
+            }
+        }
+
+        final List<Path> paths = new ArrayList<>(total);
+        final Set<String> patterns = new TreeSet<>();
+        nodes.forEach(it -> collectPaths(it, paths, patterns));
+        paths.sort(Comparator.naturalOrder());
+        return new ScanManifest(paths, new ArrayList<>(patterns), walker.files.sum(), walker.excluded.sum());
+    }
+
+    private static boolean isListed(final Node node) {
+        return node.clean || node.collapsed || !node.files.isEmpty();
+    }
+
+    private static int count(final Node node) {
+        if (!node.hasContent) {
+            return 0;
+        }
+        if (isListed(node)) {
+            return 1;
+        }
+        return node.directories.stream().mapToInt(ScanManifest::count).sum();
+    }
+
+    private static void collectMixed(final Node node, final Collection<Node> mixed) {
+        if (node.hasContent && !isListed(node)) {
+            mixed.add(node);
+            node.directories.forEach(it -> collectMixed(it, mixed));
+        }
+    }
+
+    private static void collectPaths(final Node node, final List<Path> paths, final Set<String> patterns) {
+        if (!node.hasContent) {
+            return;
+        }
+        if (isListed(node)) {
+            paths.add(node.path);
+            collectIgnored(node, node.path, patterns);
+            return;
+        }
+        node.directories.forEach(it -> collectPaths(it, paths, patterns));
+    }
+
+    private static void collectIgnored(final Node node, final Path listed, final Set<String> patterns) {
+        node.ignored.forEach(it -> {
+            final StringBuilder pattern = new StringBuilder("/");
+            listed.relativize(it).forEach(name -> pattern.append(name).append('/'));
+            patterns.add(pattern.toString());
+        });
+        node.directories.forEach(it -> collectIgnored(it, listed, patterns));
+    }
+
+    private static class Walker {
+
+        private final Path root;
+
+        private final ExclusionMatcher exclusions;
+
+        private final Set<Path> ignored;
+
+        private final LongAdder files = new LongAdder();
+
+        private final LongAdder excluded = new LongAdder();
+
+        private Walker(final Path root, final ExclusionMatcher exclusions, final Set<Path> ignored) {
+            this.root = root;
+            this.exclusions = exclusions;
+            this.ignored = ignored;
+        }
+
+        private boolean isExcluded(final Path directory) {
+            return ignored.contains(directory) || exclusions.matches(root, directory);
+        }
+
+        private class Walk extends RecursiveTask<Node> {
+
+            private final Path directory;
+
+            private final int depth;
+
+            private Walk(final Path directory, final int depth) {
+                this.directory = directory;
+                this.depth = depth;
+            }
+
+            @Override
+            protected Node compute() {
+                final Node node = new Node(directory, depth);
+                final List<Walk> children = new ArrayList<>();
+                try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                    for (final Path child : stream) {
+                        final BasicFileAttributes attributes =
+                                Files.readAttributes(child, BasicFileAttributes.class, NOFOLLOW_LINKS);
+                        if (!attributes.isDirectory()) { // links are given as is to the scanner
+                            node.files.add(child);
+                        } else if (isExcluded(child)) {
+                            node.clean = false;
+                            excluded.increment();
+                            if (ignored.contains(child)) {
+                                node.ignored.add(child);
+                            }
+                        } else {
+                            children.add(new Walk(child, depth + 1));
+                        }
+                    }
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                files.add(node.files.size());
+                invokeAll(children);
+                node.hasContent = !node.files.isEmpty();
+                for (final Walk child : children) {
+                    final Node directory = child.join();
+                    node.clean &= directory.clean;
+                    node.hasContent |= directory.hasContent;
+                    node.directories.add(directory);
+                }
+                if (node.clean) { // listed as a whole, the details are useless
+                    node.files.clear();
+                    node.directories.clear();
+                }
+                return node;
+            }
+        }
+    }
+
+    private static class Node {
+
+        private final Path path;
+
+        private final int depth;
+
+        private final List<Path> files = new ArrayList<>();
+
+        private final List<Node> directories = new ArrayList<>();
+
+        private final List<Path> ignored = new ArrayList<>();
+
+        private boolean clean = true;
+
+        private boolean hasContent;
+
+        private boolean collapsed;
+
+        private Node(final Path path, final int depth) {
+            this.path = path;
+            this.depth = depth;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import static java.util.stream.Collectors.toList;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Partitions the reactor in groups of module directories scanned by distinct hub-detect executions. The unit is the
+ * top level directory of the modules (relative to the root project) so a scanned directory never contains another
+ * shard, the directories are balanced by module count.
+ */
+class ScanShards {
+
+    private ScanShards() {
+        // no-op
+    }
+
+    /**
+     * @return the directories of each shard, at most {@code shards} non empty groups.
+     */
+    static List<List<File>> partition(final MavenProject rootProject, final List<MavenProject> reactorProjects,
+            final int shards) {
+        final Path root = rootProject.getBasedir().toPath().toAbsolutePath().normalize();
+        final Map<Path, Integer> modulesPerDirectory = new TreeMap<>();
+        for (final MavenProject project : reactorProjects) {
+            final Path basedir = project.getBasedir().toPath().toAbsolutePath().normalize();
+            if (basedir.equals(root) || !basedir.startsWith(root)) {
+                continue;
+            }
+            modulesPerDirectory.merge(root.resolve(root.relativize(basedir).getName(0)), 1, Integer::sum);
+        }
+
+        final int count = Math.max(1, Math.min(shards, modulesPerDirectory.size()));
+        final List<List<File>> groups = new ArrayList<>(count);
+        final int[] weights = new int[count];
+        for (int i = 0; i < count; i++) {
+            groups.add(new ArrayList<>());
+        }
+        // greedy: biggest directories first, each one in the lightest shard
+        modulesPerDirectory
+                .entrySet()
+                .stream()
+                .sorted(Map.Entry.<Path, Integer> comparingByValue(Comparator.reverseOrder()).thenComparing(
+                        Map.Entry.comparingByKey()))
+                .forEach(entry -> {
+                    int lightest = 0;
+                    for (int i = 1; i < count; i++) {
+                        if (weights[i] < weights[lightest]) {
+                            lightest = i;
+                        }
+                    }
+                    weights[lightest] += entry.getValue();
+                    groups.get(lightest).add(entry.getKey().toFile());
+                });
+        groups.removeIf(List::isEmpty);
+        return groups;
+    }
+
+    /**
+     * @return the entries of the root directory in no shard, the root pom, build directory and hidden entries aside.
+     */
+    static List<Path> findUnscanned(final MavenProject rootProject, final List<List<File>> shards) {
+        final Path root = rootProject.getBasedir().toPath().toAbsolutePath().normalize();
+        final Set<Path> ignored = new HashSet<>();
+        ignored.add(root.resolve("pom.xml"));
+        ignored.add(Paths.get(rootProject.getBuild().getDirectory()).toAbsolutePath().normalize());
+        shards.forEach(shard -> shard.forEach(it -> ignored.add(it.toPath().toAbsolutePath().normalize())));
+        try (final Stream<Path> entries = Files.list(root)) {
+            return entries
+                    .filter(it -> !ignored.contains(it) && !it.getFileName().toString().startsWith("."))
+                    .sorted()
+                    .collect(toList());
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
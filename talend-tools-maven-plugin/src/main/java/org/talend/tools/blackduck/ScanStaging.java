@@ -0,0 +1,235 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import static java.nio.file.StandardCopyOption.COPY_ATTRIBUTES;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.Resource;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * A mirror of the files worth a signature scan: the poms, the declared sources and resources and the artifacts of the
+ * modules. The mirror is made of hard links (a copy when the file system doesn't support it) created in parallel so
+ * the scanner only reads what the build ships instead of the whole project directory.
+ */
+class ScanStaging {
+
+    private final Path root;
+
+    private final Path mirror;
+
+    private final ExclusionMatcher exclusions;
+
+    private final Log log;
+
+    // mirror path -> staged file
+    private final Map<Path, Path> files = new TreeMap<>();
+
+    private final LongAdder links = new LongAdder();
+
+    private final LongAdder copies = new LongAdder();
+
+    private final LongAdder copiedBytes = new LongAdder();
+
+    /**
+     * @param root the directory the mirror reproduces.
+     * @param mirror where the mirror is created, it is recreated on each staging.
+     */
+    ScanStaging(final Path root, final Path mirror, final ExclusionMatcher exclusions, final Log log) {
+        this.root = root;
+        this.mirror = mirror;
+        this.exclusions = exclusions;
+        this.log = log;
+    }
+
+    void addProject(final MavenProject project) throws IOException {
+        addFile(project.getFile());
+        for (final String sourceRoot : project.getCompileSourceRoots()) {
+            addDirectory(new File(sourceRoot));
+        }
+        for (final Resource resource : project.getResources()) {
+            if (resource.getDirectory() != null) {
+                addDirectory(new File(resource.getDirectory()));
+            }
+        }
+        addFile(project.getArtifact() != null ? project.getArtifact().getFile() : null);
+        for (final Artifact artifact : project.getAttachedArtifacts()) {
+            addFile(artifact.getFile());
+        }
+    }
+
+    void addDirectory(final File directory) throws IOException {
+        if (!directory.isDirectory()) {
+            return;
+        }
+        final Path start = directory.toPath().toAbsolutePath().normalize();
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) {
+                return dir.startsWith(mirror)
+                        || !dir.equals(start) && dir.startsWith(root) && exclusions.matches(root, dir)
+                                ? FileVisitResult.SKIP_SUBTREE
+                                : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    files.put(toMirror(file), file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    void addFile(final File file) {
+        if (file != null && file.isFile()) {
+            final Path path = file.toPath().toAbsolutePath().normalize();
+            files.put(toMirror(path), path);
+        }
+    }
+
+    Path getMirror() {
+        return mirror;
+    }
+
+    boolean isEmpty() {
+        return files.isEmpty();
+    }
+
+    int size() {
+        return files.size();
+    }
+
+    long getLinks() {
+        return links.sum();
+    }
+
+    long getCopies() {
+        return copies.sum();
+    }
+
+    long getCopiedBytes() {
+        return copiedBytes.sum();
+    }
+
+    /**
+     * Creates the mirror, {@code parallelism} files at a time.
+     */
+    Path stage(final int parallelism) throws IOException {
+        delete(mirror);
+        final Set<Path> directories = new TreeSet<>();
+        files.keySet().forEach(it -> directories.add(it.getParent()));
+        for (final Path directory : directories) {
+            Files.createDirectories(directory);
+        }
+        final ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            pool
+                    .submit(() -> new ArrayList<>(files.entrySet()).parallelStream().forEach(
+                            it -> link(it.getValue(), it.getKey())))
+                    .get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (UncheckedIOException.class.isInstance(cause)) {
+                throw UncheckedIOException.class.cast(cause).getCause();
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            pool.shutdown();
+        }
+        return mirror;
+    }
+
+    private void link(final Path source, final Path target) {
+        try {
+            Files.createLink(target, source);
+            links.increment();
+        } catch (final IOException | UnsupportedOperationException e) { // other file store, no hard link support
+            log.debug(String.format("Can't link %s (%s), copying it", source, e.getMessage()));
+            try {
+                Files.copy(source, target, REPLACE_EXISTING, COPY_ATTRIBUTES);
+                copies.increment();
+                copiedBytes.add(Files.size(target));
+            } catch (final IOException ioe) {
+                throw new UncheckedIOException(ioe);
+            }
+        }
+    }
+
+    // the files outside of the root (artifacts built elsewhere) keep their absolute path under _external so two
+    // artifacts with the same name never overwrite each other
+    private Path toMirror(final Path file) {
+        if (file.startsWith(root)) {
+            return mirror.resolve(root.relativize(file).toString());
+        }
+        Path external = mirror.resolve("_external");
+        final Path fileRoot = file.getRoot();
+        if (fileRoot == null) {
+            return external.resolve(file.toString());
+        }
+        final String drive = fileRoot.toString().replaceAll("[^A-Za-z0-9]", "");
+        if (!drive.isEmpty()) {
+            external = external.resolve(drive);
+        }
+        return external.resolve(fileRoot.relativize(file).toString());
+    }
+
+    // the mirror only contains links and copies, deleting it never touches the sources
+    private static void delete(final Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
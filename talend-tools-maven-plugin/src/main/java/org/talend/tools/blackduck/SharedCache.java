@@ -0,0 +1,287 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.shared.utils.io.FileUtils;
+
+/**
+ * User level cache shared by all the projects (and builds) of a machine. Binaries are content addressed:
+ *
+ * <pre>
+ * {@code
+ * <root>/<name>/<version>.sha256     -> pointer to the content for a resolved version
+ * <root>/<name>/<sha256>/<file>      -> the binary
+ * <root>/<name>/<sha256>/<directory>.current -> pointer to the published generation of a directory
+ * <root>/<name>/<sha256>/<directory>-<id>    -> an exploded flavor of the binary
+ * }
+ * </pre>
+ *
+ * Writes are done under a file lock (and a JVM lock since file locks are per process) and published with atomic moves
+ * so concurrent builds on the same agent never see a partial entry. A published directory is never modified since
+ * other builds can link to it, replacing it publishes a new generation.
+ */
+class SharedCache {
+
+    private static final ConcurrentMap<Path, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
+    private static final String COMPLETE_MARKER = ".complete";
+
+    private final Path root;
+
+    private final Log log;
+
+    SharedCache(final File root, final Log log) {
+        this.root = root.toPath().toAbsolutePath().normalize();
+        this.log = log;
+    }
+
+    Path getRoot() {
+        return root;
+    }
+
+    /**
+     * @return the cached file for this version or null if not yet cached.
+     */
+    Path findFile(final String name, final String version, final String fileName) throws IOException {
+        final Path content = findContent(name, version);
+        if (content == null) {
+            return null;
+        }
+        final Path file = content.resolve(fileName);
+        return Files.isRegularFile(file) ? file : null;
+    }
+
+    /**
+     * @return the cached directory for this version or null if not yet cached (or not completely written).
+     */
+    Path findDirectory(final String name, final String version, final String directoryName) throws IOException {
+        final Path content = findContent(name, version);
+        if (content == null) {
+            return null;
+        }
+        return currentDirectory(content, directoryName);
+    }
+
+    Path storeFile(final String name, final String version, final File source, final String fileName)
+            throws IOException {
+        final String sha256 = sha256(source.toPath());
+        final Path content = root.resolve(name).resolve(sha256);
+        final Path target = content.resolve(fileName);
+        return withLock(root.resolve(name).resolve(".lock"), () -> {
+            if (!Files.isRegularFile(target)) {
+                Files.createDirectories(content);
+                final Path tmp = content.resolve(fileName + ".tmp");
+                Files.copy(source.toPath(), tmp, REPLACE_EXISTING);
+                move(tmp, target);
+                log.info(String.format("Cached '%s' in '%s'", source, target));
+            }
+            writePointer(name, version, sha256);
+            return target;
+        });
+    }
+
+    /**
+     * Creates (once) a directory derived from an already stored file, typically its exploded flavor.
+     *
+     * @param replace should an already complete directory be produced again, the new one is published next to it
+     * and the previous one is left untouched for the builds still using it.
+     */
+    Path storeDirectory(final String name, final String version, final String directoryName, final boolean replace,
+            final IOConsumer<Path> producer) throws IOException {
+        final Path content = findContent(name, version);
+        if (content == null) {
+            throw new IllegalStateException(String.format("No cached content for %s:%s", name, version));
+        }
+        return withLock(content.resolve(directoryName + ".lock"), () -> {
+            final Path current = currentDirectory(content, directoryName);
+            if (current != null && !replace) {
+                return current;
+            }
+            final Path directory = content.resolve(directoryName + '-' + UUID.randomUUID());
+            try {
+                producer.accept(directory);
+                Files.createDirectories(directory);
+                Files.createFile(directory.resolve(COMPLETE_MARKER));
+            } catch (final IOException | RuntimeException e) {
+                if (Files.exists(directory)) {
+                    FileUtils.deleteDirectory(directory.toFile());
+                }
+                throw e;
+            }
+            write(content.resolve(directoryName + ".current"), directory.getFileName().toString());
+            return directory;
+        });
+    }
+
+    /**
+     * Hard links the cached file to the target location, falls back on a copy if the filesystem doesn't support it.
+     */
+    void linkFile(final Path cached, final File target) throws IOException {
+        final Path link = target.toPath();
+        Files.createDirectories(link.getParent());
+        Files.deleteIfExists(link);
+        try {
+            Files.createLink(link, cached);
+        } catch (final IOException | UnsupportedOperationException e) {
+            log.debug(String.format("Can't hard link '%s' (%s), copying it", cached, e.getMessage()));
+            Files.copy(cached, link, REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Symlinks the cached directory to the target location.
+     *
+     * @return the directory to use, the link or the cached directory if symbolic links are not supported.
+     */
+    File linkDirectory(final Path cached, final File target) throws IOException {
+        final Path link = target.toPath();
+        if (Files.isSymbolicLink(link) && cached.equals(Files.readSymbolicLink(link))) {
+            return target;
+        }
+        if (Files.isSymbolicLink(link)) {
+            Files.delete(link);
+        } else if (target.exists()) {
+            FileUtils.deleteDirectory(target);
+        }
+        Files.createDirectories(link.getParent());
+        try {
+            Files.createSymbolicLink(link, cached);
+            return target;
+        } catch (final IOException | UnsupportedOperationException e) {
+            log.debug(String.format("Can't symlink '%s' (%s), using it directly", cached, e.getMessage()));
+            return cached.toFile();
+        }
+    }
+
+    private Path findContent(final String name, final String version) throws IOException {
+        final Path pointer = root.resolve(name).resolve(version + ".sha256");
+        if (!Files.isRegularFile(pointer)) {
+            return null;
+        }
+        final String sha256 = new String(Files.readAllBytes(pointer), UTF_8).trim();
+        final Path content = root.resolve(name).resolve(sha256);
+        return Files.isDirectory(content) ? content : null;
+    }
+
+    // the published generation of a directory, null if there is none (or it is incomplete)
+    private static Path currentDirectory(final Path content, final String directoryName) throws IOException {
+        final Path pointer = content.resolve(directoryName + ".current");
+        final Path directory =
+                Files.isRegularFile(pointer) ? content.resolve(new String(Files.readAllBytes(pointer), UTF_8).trim())
+                        : content.resolve(directoryName); // written before the generations
+        return Files.exists(directory.resolve(COMPLETE_MARKER)) ? directory : null;
+    }
+
+    private void writePointer(final String name, final String version, final String sha256) throws IOException {
+        write(root.resolve(name).resolve(version + ".sha256"), sha256);
+    }
+
+    private static void write(final Path pointer, final String value) throws IOException {
+        final Path tmp = pointer.resolveSibling(pointer.getFileName() + ".tmp");
+        Files.write(tmp, value.getBytes(UTF_8));
+        move(tmp, pointer);
+    }
+
+    static void move(final Path from, final Path to) throws IOException {
+        try {
+            Files.move(from, to, ATOMIC_MOVE, REPLACE_EXISTING);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(from, to, REPLACE_EXISTING);
+        }
+    }
+
+    static <T> T withLock(final Path lockFile, final IOSupplier<T> task) throws IOException {
+        final ReentrantLock jvmLock = LOCKS.computeIfAbsent(lockFile, k -> new ReentrantLock());
+        jvmLock.lock();
+        try {
+            Files.createDirectories(lockFile.getParent());
+            try (final FileChannel channel =
+                    FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                final FileLock lock = channel.lock();
+                try {
+                    return task.get();
+                } finally {
+                    lock.release();
+                }
+            }
+        } finally {
+            jvmLock.unlock();
+        }
+    }
+
+    static String sha256(final Path file) throws IOException {
+        final MessageDigest digest = newSha256();
+        final byte[] buffer = new byte[65536];
+        try (final InputStream stream = Files.newInputStream(file)) {
+            int read;
+            while ((read = stream.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    static String sha256(final String value) {
+        return toHex(newSha256().digest(value.getBytes(UTF_8)));
+    }
+
+    static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(final byte[] bytes) {
+        final StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (final byte b : bytes) {
+            builder.append(Character.forDigit((b >>> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    interface IOConsumer<T> {
+
+        void accept(T value) throws IOException;
+    }
+
+    interface IOSupplier<T> {
+
+        T get() throws IOException;
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.blackducksoftware.integration.exception.IntegrationException;
+import com.blackducksoftware.integration.hub.proxy.ProxyInfo;
+import com.blackducksoftware.integration.hub.rest.CredentialsRestConnection;
+import com.blackducksoftware.integration.log.IntLogger;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * A connection safe to share between threads (the builders of a parallel build, the batch validations). The base
+ * connection authenticates lazily and again on a 401 by reconfiguring its shared OkHttpClient.Builder and publishing
+ * the new client before the login completed, so concurrent logins corrupt each other and the other threads send
+ * requests with a client not yet authenticated. Here the logins are serialized, a login requested while another one
+ * was running is skipped and the new client is only published once authenticated. The OkHttpClient is immutable and
+ * thread safe. The common request headers (the CSRF token) are a plain map, the connection is connected before being
+ * shared so the later logins only replace the value of an existing header.
+ */
+class SharedRestConnection extends CredentialsRestConnection {
+
+    private final AtomicLong logins = new AtomicLong();
+
+    private volatile Thread connecting;
+
+    private OkHttpClient pending;
+
+    SharedRestConnection(final IntLogger logger, final URL hubBaseUrl, final String username, final String password,
+            final int timeout, final ProxyInfo proxyInfo) {
+        super(logger, hubBaseUrl, username, password, timeout, proxyInfo);
+    }
+
+    @Override
+    public void connect() throws IntegrationException {
+        final long seen = logins.get();
+        synchronized (this) {
+            if (seen != logins.get()) { // another thread logged in meanwhile
+                return;
+            }
+            connecting = Thread.currentThread();
+            try {
+                super.connect();
+                super.setClient(pending);
+                logins.incrementAndGet();
+            } finally {
+                connecting = null;
+                pending = null;
+            }
+        }
+    }
+
+    // while connecting, the login uses the new client which is not yet visible to the other threads
+    @Override
+    public OkHttpClient getClient() {
+        return connecting == Thread.currentThread() ? pending : super.getClient();
+    }
+
+    @Override
+    public void setClient(final OkHttpClient client) {
+        if (connecting == Thread.currentThread()) {
+            pending = client;
+        } else {
+            super.setClient(client);
+        }
+    }
+}
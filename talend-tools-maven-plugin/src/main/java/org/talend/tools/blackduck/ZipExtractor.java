@@ -0,0 +1,169 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Explodes the scan cli archive.
+ */
+class ZipExtractor {
+
+    private ZipExtractor() {
+        // no-op
+    }
+
+    /**
+     * Uses the central directory of the archive to share the entries between a bounded pool of workers.
+     *
+     * @return the number of extracted files.
+     */
+    static int unzip(final File zipFile, final File destination, final boolean noparent, final int threads)
+            throws IOException {
+        if (threads <= 1) {
+            return unzip(zipFile, destination, noparent);
+        }
+
+        final ConcurrentMap<Path, Boolean> directories = new ConcurrentHashMap<>();
+        try (final ZipFile zip = new ZipFile(zipFile)) {
+            final List<ZipEntry> files = new ArrayList<>();
+            final Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                final Path path = destination.toPath().resolve(entryPath(entry, noparent));
+                if (entry.isDirectory()) {
+                    mkdirs(directories, path);
+                } else {
+                    files.add(entry);
+                }
+            }
+            // biggest first to balance the load between the workers
+            files.sort(Comparator.comparingLong(ZipEntry::getSize).reversed());
+
+            final ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+                final Thread thread = new Thread(r, "scan-cli-unzip");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                final List<Future<?>> futures = new ArrayList<>(files.size());
+                for (final ZipEntry entry : files) {
+                    futures.add(pool.submit(() -> {
+                        final Path target = destination.toPath().resolve(entryPath(entry, noparent));
+                        mkdirs(directories, target.getParent());
+                        // the inflater output is on heap anyway, an intermediate direct buffer would only add a copy
+                        try (final InputStream in = zip.getInputStream(entry)) {
+                            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+                        }
+                        return null;
+                    }));
+                }
+                for (final Future<?> future : futures) {
+                    try {
+                        future.get();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException(e);
+                    } catch (final ExecutionException e) {
+                        throw new IOException(e.getCause());
+                    }
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+            return files.size();
+        }
+    }
+
+    static int unzip(final File zipFile, final File destination, final boolean noparent) throws IOException {
+        try (final InputStream in = new BufferedInputStream(new FileInputStream(zipFile))) {
+            return unzip(in, destination, noparent);
+        }
+    }
+
+    /**
+     * Extracts the entries as they come from the stream, it doesn't close the stream and doesn't consume the central
+     * directory of the archive.
+     */
+    static int unzip(final InputStream stream, final File destination, final boolean noparent) throws IOException {
+        final ZipInputStream in = new ZipInputStream(stream);
+        int count = 0;
+        ZipEntry entry;
+        while ((entry = in.getNextEntry()) != null) {
+            final File file = new File(destination, entryPath(entry, noparent));
+            if (entry.isDirectory()) {
+                file.mkdirs();
+                continue;
+            }
+
+            file.getParentFile().mkdirs();
+            Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            count++;
+        }
+        return count;
+    }
+
+    private static void mkdirs(final ConcurrentMap<Path, Boolean> directories, final Path directory)
+            throws IOException {
+        if (directory == null || directories.containsKey(directory)) {
+            return;
+        }
+        try {
+            // computeIfAbsent blocks the concurrent workers until the directory really exists
+            directories.computeIfAbsent(directory, dir -> {
+                try {
+                    Files.createDirectories(dir);
+                } catch (final IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                return true;
+            });
+        } catch (final IllegalStateException ise) {
+            if (IOException.class.isInstance(ise.getCause())) {
+                throw IOException.class.cast(ise.getCause());
+            }
+            throw ise;
+        }
+    }
+
+    private static String entryPath(final ZipEntry entry, final boolean noparent) {
+        final String path = entry.getName();
+        if (noparent) {
+            return path.replaceFirst("^[^/]+/", "");
+        }
+        return path;
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DetectDaemonClientTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final File java = new File(System.getProperty("java.home"), "bin/java");
+
+    private File jar;
+
+    private File workers;
+
+    @Before
+    public void stubDetect() throws IOException {
+        jar = temporaryFolder.newFile("stub-detect.jar");
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, StubDetect.class.getName());
+        final String entry = StubDetect.class.getName().replace('.', '/') + ".class";
+        try (final JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar.toPath()), manifest);
+                final InputStream in = StubDetect.class.getClassLoader().getResourceAsStream(entry)) {
+            out.putNextEntry(new JarEntry(entry));
+            copy(in, out);
+            out.closeEntry();
+        }
+    }
+
+    @Test
+    public void executeInWorker() throws IOException {
+        assumeTrue(DetectDaemonClient.isSupported());
+        final DetectDaemonClient client = newClient(null);
+        for (final int status : new int[] { 3, 0 }) { // the second run reuses the warm worker and its classes
+            final List<String> output = new CopyOnWriteArrayList<>();
+            assertEquals(status, client.execute(asList(Integer.toString(status), "b"), output::add));
+            assertEquals(asList("stub args=" + status + ",b", "stub run=" + (status == 3 ? 1 : 2)), output);
+        }
+    }
+
+    @Test
+    public void exitStatus() throws IOException {
+        assumeTrue(DetectDaemonClient.isSupported());
+        final DetectDaemonClient client = newClient(null);
+        final List<String> output = new CopyOnWriteArrayList<>();
+        assertEquals(4, client.execute(asList("4", "thread"), output::add));
+        assertEquals(asList("stub args=4,thread", "stub run=1"), output);
+        output.clear();
+        assertEquals(DetectWorker.FAILED, client.execute(asList("0", "fail"), output::add));
+        assertTrue(output.toString(), output.contains("java.lang.IllegalStateException: stub failure"));
+    }
+
+    @Test
+    public void stateIsPrivate() throws IOException {
+        assumeTrue(DetectDaemonClient.isSupported());
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        newClient(null).execute(asList("0", "b"), line -> {
+        });
+        try (final Stream<Path> states = Files.list(workers.toPath())) {
+            final Path state = states.filter(it -> it.toString().endsWith(".worker")).findFirst().get();
+            assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(state));
+        }
+    }
+
+    @Test
+    public void unavailableWorkerFailsFast() throws IOException {
+        final DetectDaemonClient client = newClient(singletonList("-XX:+ThisOptionDoesNotExist"));
+        final long start = System.nanoTime();
+        try {
+            client.execute(asList("0", "b"), line -> {
+            });
+            fail("the worker can't start");
+        } catch (final DetectDaemonClient.WorkerUnavailableException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("exited with status"));
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 30);
+    }
+
+    private DetectDaemonClient newClient(final List<String> jvmOptions) throws IOException {
+        workers = temporaryFolder.newFolder("workers");
+        return new DetectDaemonClient(java, jar, jvmOptions, "test", workers, TimeUnit.SECONDS.toMillis(5),
+                new SystemStreamLog());
+    }
+
+    private static void copy(final InputStream in, final OutputStream out) throws IOException {
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileHashIndexTest {
+
+    // bigger than the initial capacity (1024 slots, 768 entries) to force several resizes
+    private static final int FILES = 2000;
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final List<Path> files = new ArrayList<>();
+
+    private Path index;
+
+    @Before
+    public void createFiles() throws IOException {
+        index = temporaryFolder.newFolder("output").toPath().resolve("file-hashes.index");
+        final Path sources = temporaryFolder.newFolder("sources").toPath();
+        for (int i = 0; i < FILES; i++) {
+            files.add(write(sources.resolve("file" + i + ".txt"), "content " + i));
+        }
+    }
+
+    @Test
+    public void generations() throws IOException {
+        try (final FileHashIndex hashes = FileHashIndex.open(index, new SystemStreamLog())) {
+            assertTrue(hashes.isCreated());
+            hashAll(hashes, files);
+            assertEquals(FILES, hashes.getAdded().size());
+            assertEquals(0, hashes.getHits());
+            assertEquals(0, hashes.countRemoved());
+        }
+        assertIndexOnly();
+
+        try (final FileHashIndex hashes = FileHashIndex.open(index, new SystemStreamLog())) {
+            assertFalse(hashes.isCreated());
+            hashAll(hashes, files);
+            assertEquals(FILES, hashes.getHits());
+            assertEquals(0, hashes.getAdded().size());
+            assertEquals(0, hashes.getModified().size());
+            assertEquals(0, hashes.countRemoved());
+        }
+        assertEquals(32 + 4096 * 68, Files.size(index)); // resized twice
+
+        // one modified file, the last 1000 ones removed
+        write(files.get(0), "modified");
+        final List<Path> remaining = files.subList(0, FILES - 1000);
+        try (final FileHashIndex hashes = FileHashIndex.open(index, new SystemStreamLog())) {
+            hashAll(hashes, remaining);
+            assertEquals(remaining.size() - 1, hashes.getHits());
+            assertEquals(1, hashes.getModified().size());
+            assertEquals(1000, hashes.countRemoved());
+        }
+        // compacted: 1000 entries fit in 2048 slots
+        assertEquals(32 + 2048 * 68, Files.size(index));
+        assertIndexOnly();
+
+        try (final FileHashIndex hashes = FileHashIndex.open(index, new SystemStreamLog())) {
+            hashAll(hashes, remaining);
+            assertEquals(remaining.size(), hashes.getHits());
+            assertEquals(0, hashes.countRemoved());
+        }
+    }
+
+    @Test
+    public void invalidIndexIsRecreated() throws IOException {
+        Files.write(index, "not an index, long enough to have a header".getBytes(UTF_8));
+        try (final FileHashIndex hashes = FileHashIndex.open(index, new SystemStreamLog())) {
+            assertTrue(hashes.isCreated());
+            hashAll(hashes, files.subList(0, 10));
+            assertEquals(10, hashes.getAdded().size());
+        }
+        try (final FileHashIndex hashes = FileHashIndex.open(index, new SystemStreamLog())) {
+            assertFalse(hashes.isCreated());
+        }
+    }
+
+    private void hashAll(final FileHashIndex hashes, final List<Path> paths) throws IOException {
+        for (final Path path : paths) {
+            // the returned hash is always the one of the current content, cached or not
+            assertEquals(SharedCache.sha256(path), hashes.hash(path.getFileName().toString(), path,
+                    Files.readAttributes(path, BasicFileAttributes.class)));
+        }
+    }
+
+    // the index is never left next to temporary files
+    private void assertIndexOnly() throws IOException {
+        assertEquals(1, index.getParent().toFile().list().length);
+    }
+
+    // out of the racy window, else the hashes are not indexed
+    private static Path write(final Path path, final String content) throws IOException {
+        Files.write(path, content.getBytes(UTF_8));
+        Files.setLastModifiedTime(path, FileTime
+                .fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1) + (content.hashCode() & 0xFFFF)));
+        return path;
+    }
+}
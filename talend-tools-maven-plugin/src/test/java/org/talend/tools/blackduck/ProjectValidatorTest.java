@@ -0,0 +1,180 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.TimeZone;
+import java.util.UUID;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.blackducksoftware.integration.hub.api.report.ReportRequestService;
+import com.blackducksoftware.integration.hub.model.view.ProjectVersionView;
+import com.blackducksoftware.integration.hub.rest.CredentialsRestConnection;
+import com.blackducksoftware.integration.hub.service.HubServicesFactory;
+
+public class ProjectValidatorTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final String VERSION = "/api/projects/p/versions/v";
+
+    private static final String REPORT = "/api/reports/1";
+
+    private StubHub hub;
+
+    private CredentialsRestConnection connection;
+
+    private ProjectVersionView versionView;
+
+    @Before
+    public void stubVersion() throws Exception {
+        hub = new StubHub();
+        hub
+                .on("GET", VERSION + "/risk-profile", 200, "{\"bomLastUpdatedAt\":\"2017-10-10T10:00:00.000Z\","
+                        + "\"categories\":{\"LICENSE\":{\"HIGH\":2},\"VULNERABILITY\":{},\"ACTIVITY\":{},\"VERSION\":{},"
+                        + "\"OPERATIONAL\":{}}}", null)
+                .on("POST", VERSION + "/reports", 201, null, REPORT)
+                .on("GET", REPORT, 200,
+                        "{\"finishedAt\":\"2017-10-10T10:01:00.000Z\",\"_meta\":{\"href\":\"${hub}" + REPORT
+                                + "\",\"links\":[{\"rel\":\"content\",\"href\":\"${hub}" + REPORT + "/content\"}]}}",
+                        null)
+                .on("GET", REPORT + "/content", 200,
+                        "{\"reportContent\":[{\"fileContent\":{\"aggregateBomViewEntries\":["
+                                + "{\"producerProject\":{\"name\":\"lib\"},\"producerReleases\":[{\"version\":\"1\"}],"
+                                + "\"riskProfile\":{\"categories\":{\"OPERATIONAL\":{\"HIGH\":1}}}}]}}]}",
+                        null)
+                .on("DELETE", REPORT, 204, null, null);
+        connection = hub.connect();
+        versionView = connection.gson.fromJson(
+                "{\"versionName\":\"v\",\"_meta\":{\"href\":\"" + hub.url(VERSION)
+                        + "\",\"links\":[{\"rel\":\"riskProfile\",\"href\":\"" + hub.url(VERSION + "/risk-profile")
+                        + "\"},{\"rel\":\"versionReport\",\"href\":\"" + hub.url(VERSION + "/reports") + "\"}]}}",
+                ProjectVersionView.class);
+    }
+
+    @After
+    public void stopHub() {
+        hub.close();
+    }
+
+    @Test
+    public void riskProfileIsASingleRequest() throws Exception {
+        assertEquals(singletonList("Found #2 license high violations, accepted: #0"), validate(true));
+        assertEquals(singletonList("GET " + VERSION + "/risk-profile"), hub.getRequests());
+    }
+
+    @Test
+    public void incompleteRiskProfileFallsBackOnTheReport() throws Exception {
+        hub.on("GET", VERSION + "/risk-profile", 200,
+                "{\"categories\":{\"LICENSE\":{\"HIGH\":2},\"VULNERABILITY\":{},\"ACTIVITY\":{},\"VERSION\":{}}}",
+                null);
+        // the missing operational category must not be read as 0
+        assertEquals(singletonList("Found #1 operational high violations, accepted: #0"), validate(true));
+        assertEquals(asList("GET " + VERSION + "/risk-profile", "POST " + VERSION + "/reports", "GET " + REPORT,
+                "GET " + REPORT + "/content", "DELETE " + REPORT), hub.getRequests());
+    }
+
+    @Test
+    public void reportIsTheDefaultEngine() throws Exception {
+        assertEquals(singletonList("Found #1 operational high violations, accepted: #0"), validate(false));
+        assertEquals(asList("POST " + VERSION + "/reports", "GET " + REPORT, "GET " + REPORT + "/content",
+                "DELETE " + REPORT), hub.getRequests());
+    }
+
+    @Test
+    public void reusedReportDeletedWhileStreamedIsRetried() throws Exception {
+        final String reused = "/api/reports/0";
+        hub
+                .on("GET", reused, 200,
+                        "{\"finishedAt\":\"2017-10-10T10:01:00.000Z\",\"_meta\":{\"href\":\"${hub}" + reused
+                                + "\",\"links\":[{\"rel\":\"content\",\"href\":\"${hub}" + reused + "/content\"}]}}",
+                        null)
+                .on("GET", reused + "/content", 200, // truncated by the deletion of the owner
+                        "{\"reportContent\":[{\"fileContent\":{\"aggregateBomViewEntries\":["
+                                + "{\"producerProject\":{\"name\":\"lib\"},\"producerReleases\":[{\"version\":\"1\"}],"
+                                + "\"riskProfile\":{\"categories\":{\"OPERATIONAL\":{\"HIGH\":5}}}},",
+                        null);
+        final File inflight = inflight(reused, System.currentTimeMillis());
+        // the entries of the partial stream must not be counted
+        assertEquals(singletonList("Found #1 operational high violations, accepted: #0"),
+                validate(false, inflight.toPath()));
+        assertEquals(asList("GET " + VERSION + "/risk-profile", "GET " + reused, "GET " + reused + "/content",
+                "POST " + VERSION + "/reports", "GET " + REPORT, "GET " + REPORT + "/content", "DELETE " + REPORT),
+                hub.getRequests());
+    }
+
+    @Test
+    public void reportRequestedBeforeTheBomUpdateIsNotReused() throws Exception {
+        final long now = System.currentTimeMillis();
+        final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.ROOT);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        hub.on("GET", VERSION + "/risk-profile", 200,
+                "{\"bomLastUpdatedAt\":\"" + format.format(new Date(now)) + "\",\"categories\":{}}", null);
+        // still in progress but requested before the BOM update
+        final File inflight = inflight("/api/reports/0", now - 1000);
+        assertEquals(singletonList("Found #1 operational high violations, accepted: #0"),
+                validate(false, inflight.toPath()));
+        assertEquals(asList("GET " + VERSION + "/risk-profile", "POST " + VERSION + "/reports", "GET " + REPORT,
+                "GET " + REPORT + "/content", "DELETE " + REPORT), hub.getRequests());
+    }
+
+    // a report being generated by another build
+    private File inflight(final String report, final long startedAt) throws Exception {
+        final File inflight = temporaryFolder.newFolder();
+        final Properties properties = new Properties();
+        properties.setProperty("url", hub.url(report));
+        properties.setProperty("startedAt", Long.toString(startedAt));
+        try (final OutputStream stream = new FileOutputStream(new File(inflight,
+                UUID.nameUUIDFromBytes(hub.url(VERSION).getBytes(UTF_8)).toString() + ".inflight"))) {
+            properties.store(stream, "owned by another build");
+        }
+        return inflight;
+    }
+
+    private List<String> validate(final boolean useRiskProfile) throws Exception {
+        return validate(useRiskProfile, null);
+    }
+
+    private List<String> validate(final boolean useRiskProfile, final Path inflight) throws Exception {
+        final SystemStreamLog log = new SystemStreamLog();
+        final BuildMetrics metrics = new BuildMetrics();
+        final ReportRequestService reportService = new HubServicesFactory(connection).createReportRequestService(60000);
+        final ReportPoller poller = new ReportPoller(reportService, inflight, 60000, 500, metrics, log);
+        return new ProjectValidator(connection, reportService, poller, null, useRiskProfile, false, metrics, log)
+                .validate(versionView, new BlackduckValidateMojo().createRules(), BlackduckValidateMojo.LEGACY_RULES,
+                        "");
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.blackducksoftware.integration.hub.service.HubServicesFactory;
+
+public class ProjectVersionResolverTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void missingVersionIsNotCreated() throws Exception {
+        try (final StubHub hub = new StubHub()) {
+            hub.on("GET", "/api/projects", 200, "{\"totalCount\":0,\"items\":[]}", null);
+            final ProjectVersionResolver resolver =
+                    new ProjectVersionResolver(new HubServicesFactory(hub.connect()).createProjectDataService(),
+                            hub.url(""), null, false, new BuildMetrics(), new SystemStreamLog());
+            try {
+                resolver.resolve("product", "1.0");
+                fail("the version doesn't exist");
+            } catch (final MojoExecutionException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("No project version product 1.0"));
+            }
+            assertEquals(asList("GET /api/projects", "GET /api/projects"), hub.getRequests());
+        }
+    }
+
+    @Test
+    public void exactVersionIgnoresTheMissingCache() throws Exception {
+        final MissingVersionCache missingVersions =
+                new MissingVersionCache(temporaryFolder.getRoot().toPath().resolve(MissingVersionCache.FILE_NAME),
+                        60000, new SystemStreamLog());
+        try (final StubHub hub = new StubHub()) {
+            hub.on("GET", "/api/projects", 200, "{\"totalCount\":0,\"items\":[]}", null);
+            missingVersions.markMissing(MissingVersionCache.key(hub.url(""), "product", "1.0"));
+            missingVersions.markMissing(MissingVersionCache.key(hub.url(""), "product", "1.0-SNAPSHOT"));
+            final ProjectVersionResolver resolver =
+                    new ProjectVersionResolver(new HubServicesFactory(hub.connect()).createProjectDataService(),
+                            hub.url(""), missingVersions, false, new BuildMetrics(), new SystemStreamLog());
+            try {
+                resolver.resolve("product", "1.0");
+                fail("the version doesn't exist");
+            } catch (final MojoExecutionException e) {
+                // expected
+            }
+            // the release is looked up even if known as missing (a scan can have created it), not its snapshot
+            assertEquals(asList("GET /api/projects"), hub.getRequests());
+        }
+    }
+}
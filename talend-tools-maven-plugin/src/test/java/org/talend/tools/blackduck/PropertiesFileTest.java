@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PropertiesFileTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void concurrentUpdatesAreNotLost() throws Exception {
+        final File directory = temporaryFolder.newFolder();
+        final ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<?>> updates = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                final String key = "key" + i;
+                // one instance per update as the caches do, only the lock file serializes them
+                updates.add(pool.submit(() -> {
+                    new PropertiesFile(directory.toPath().resolve("cache.properties"), "test", new SystemStreamLog())
+                            .update(properties -> properties.setProperty(key, "value") == null);
+                    return null;
+                }));
+            }
+            for (final Future<?> update : updates) {
+                update.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(200,
+                new PropertiesFile(directory.toPath().resolve("cache.properties"), "test", new SystemStreamLog())
+                        .load()
+                        .size());
+        final String[] files = directory.list();
+        assertEquals(String.join(",", files), 2, files.length); // no temporary file left, only the lock
+    }
+
+    @Test
+    public void noWriteWhenNothingChanged() throws IOException {
+        final File file = new File(temporaryFolder.getRoot(), "cache.properties");
+        new PropertiesFile(file.toPath(), "test", new SystemStreamLog()).update(properties -> false);
+        assertFalse(file.exists());
+    }
+}
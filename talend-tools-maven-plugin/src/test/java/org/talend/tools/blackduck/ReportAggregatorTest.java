@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.talend.tools.blackduck.ReportAggregator.Category.LICENSE;
+import static org.talend.tools.blackduck.ReportAggregator.Category.OPERATIONAL;
+import static org.talend.tools.blackduck.ReportAggregator.Category.VULNERABILITY;
+import static org.talend.tools.blackduck.ReportAggregator.Severity.HIGH;
+import static org.talend.tools.blackduck.ReportAggregator.Severity.LOW;
+import static org.talend.tools.blackduck.ReportAggregator.Severity.MEDIUM;
+import static org.talend.tools.blackduck.ReportAggregator.Severity.UNKNOWN;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ReportAggregatorTest {
+
+    @Test
+    public void aggregatePerCategoryAndSeverity() throws IOException {
+        final ReportAggregator aggregator = new ReportAggregator();
+        final List<String> entries = new ArrayList<>();
+        aggregator.aggregate(
+                new StringReader(
+                        "{\"id\":\"ignored\",\"reportContent\":[{\"fileContent\":{" + "\"aggregateBomViewEntries\":["
+                                + entry("lib-a", "1.0",
+                                        "\"LICENSE\":{\"HIGH\":1,\"LOW\":0},\"VULNERABILITY\":{\"MEDIUM\":2}")
+                                + ',' + entry("lib-b", "2.0", "\"LICENSE\":{\"HIGH\":1},\"OPERATIONAL\":{\"LOW\":3}")
+                                + "]}},{\"fileContent\":{\"aggregateBomViewEntries\":["
+                                + entry("lib-c", "3.0", "\"VULNERABILITY\":{\"MEDIUM\":1,\"UNKNOWN\":4}") + "]}}]}"),
+                (component, version, counts) -> entries
+                        .add(component + ':' + version + '=' + counts[ReportAggregator.index(LICENSE, HIGH)]));
+        assertEquals(3, aggregator.getEntries());
+        assertEquals(2, aggregator.get(LICENSE, HIGH));
+        assertEquals(0, aggregator.get(LICENSE, LOW));
+        assertEquals(3, aggregator.get(VULNERABILITY, MEDIUM));
+        assertEquals(4, aggregator.get(VULNERABILITY, UNKNOWN));
+        assertEquals(3, aggregator.get(OPERATIONAL, LOW));
+        assertEquals(12, sum(aggregator.getTotals()));
+        // the listener gets the counters of each entry, not the running totals
+        assertEquals(Arrays.asList("lib-a:1.0=1", "lib-b:2.0=1", "lib-c:3.0=0"), entries);
+    }
+
+    @Test
+    public void emptyReport() throws IOException {
+        final ReportAggregator aggregator = new ReportAggregator();
+        aggregator.aggregate(
+                new StringReader("{\"reportContent\":[{\"fileContent\":{\"aggregateBomViewEntries\":[]}}]}"), null);
+        assertEquals(0, aggregator.getEntries());
+        assertArrayEquals(
+                new int[ReportAggregator.Category.values().length * ReportAggregator.Severity.values().length],
+                aggregator.getTotals());
+    }
+
+    @Test
+    public void unknownCategoryAndSeverityAreIgnored() throws IOException {
+        final ReportAggregator aggregator = new ReportAggregator();
+        aggregator.aggregate(
+                new StringReader("{\"reportContent\":[{\"fileContent\":{\"aggregateBomViewEntries\":[" + entry("lib",
+                        "1.0", "\"LICENSE\":{\"CRITICAL\":5,\"HIGH\":1,\"MEDIUM\":\"2\"},\"SECURITY\":{\"HIGH\":7},"
+                                + "\"OPERATIONAL\":null")
+                        + "]}}]}"),
+                null);
+        assertEquals(1, aggregator.getEntries());
+        assertEquals(1, aggregator.get(LICENSE, HIGH));
+        assertEquals(1, sum(aggregator.getTotals()));
+    }
+
+    private static String entry(final String component, final String version, final String categories) {
+        return "{\"producerProject\":{\"name\":\"" + component + "\"},\"producerReleases\":[{\"version\":\"" + version
+                + "\"}],\"riskProfile\":{\"categories\":{" + categories + "}}}";
+    }
+
+    private static int sum(final int[] values) {
+        int sum = 0;
+        for (final int value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ScanManifestTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path root;
+
+    @Before
+    public void reactor() throws IOException {
+        root = temporaryFolder.getRoot().toPath().toAbsolutePath().normalize();
+        for (final String file : asList("a/src/A.java", "a/target/a.jar", "a/node_modules/lib/index.js",
+                "b/src/target/T.java", "target/classes/R.class")) {
+            final Path path = root.resolve(file);
+            Files.createDirectories(path.getParent());
+            Files.createFile(path);
+        }
+    }
+
+    @Test
+    public void directoriesOnly() throws IOException {
+        final ScanManifest manifest = build(asList(root.resolve("a"), root.resolve("b")), 5);
+        // a mixes sources with excluded content so its clean subdirectory is listed, a package named target is kept
+        assertEquals(asList(root.resolve("a/src"), root.resolve("b")), manifest.getPaths());
+        assertEquals(emptyList(), manifest.getExclusionPatterns());
+        assertEquals(2, manifest.getExcludedDirectories());
+    }
+
+    @Test
+    public void directoryWithFilesIsListedAsAWhole() throws IOException {
+        Files.createFile(root.resolve("pom.xml"));
+        final ScanManifest manifest = build(singletonList(root), 5);
+        assertEquals(singletonList(root), manifest.getPaths());
+        // the build directories are excluded by path, node_modules by the scanner patterns
+        assertEquals(asList("/a/target/", "/target/"), manifest.getExclusionPatterns());
+    }
+
+    @Test
+    public void collapsedAboveMaxPaths() throws IOException {
+        final ScanManifest manifest = build(singletonList(root), 1);
+        assertEquals(singletonList(root), manifest.getPaths());
+        assertEquals(asList("/a/target/", "/target/"), manifest.getExclusionPatterns());
+    }
+
+    private ScanManifest build(final List<Path> starts, final int maxPaths) throws IOException {
+        return ScanManifest.build(root, starts, new ExclusionMatcher(singletonList("/node_modules/")),
+                asList(root.resolve("target"), root.resolve("a/target")), maxPaths);
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ScanStagingTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void externalFilesWithTheSameNameAreKept() throws IOException {
+        final Path base = temporaryFolder.getRoot().toPath().toAbsolutePath().normalize();
+        final Path root = Files.createDirectories(base.resolve("project"));
+        final Path first = write(base.resolve("repo/a/1.0/lib.jar"), "a");
+        final Path second = write(base.resolve("repo/b/1.0/lib.jar"), "b");
+        final Path mirror = root.resolve("target/blackduck/staging");
+        final ScanStaging staging = new ScanStaging(root, mirror, new ExclusionMatcher(singletonList("/blackduck/")),
+                new SystemStreamLog());
+        staging.addFile(first.toFile());
+        staging.addFile(second.toFile());
+        assertEquals(2, staging.size());
+        assertFalse(Files.exists(mirror)); // listing the files doesn't stage them
+
+        assertEquals(mirror, staging.stage(2));
+        final Path external = mirror.resolve("_external");
+        assertEquals("a", read(external.resolve(first.getRoot().relativize(first).toString())));
+        assertEquals("b", read(external.resolve(second.getRoot().relativize(second).toString())));
+    }
+
+    private static Path write(final Path file, final String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        return Files.write(file, content.getBytes(UTF_8));
+    }
+
+    private static String read(final Path file) throws IOException {
+        return new String(Files.readAllBytes(file), UTF_8);
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SharedCacheTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void replaceDirectoryKeepsThePublishedOne() throws IOException {
+        final SharedCache cache = new SharedCache(temporaryFolder.newFolder("cache"), new SystemStreamLog());
+        final File binary = temporaryFolder.newFile("scan-cli.zip");
+        Files.write(binary.toPath(), "binary".getBytes(UTF_8));
+        cache.storeFile("scan-cli", "1.0", binary, "scan-cli.zip");
+
+        final Path first = cache.storeDirectory("scan-cli", "1.0", "exploded", false, dir -> write(dir, "first"));
+        assertEquals(first, cache.storeDirectory("scan-cli", "1.0", "exploded", false, dir -> write(dir, "other")));
+
+        final Path second = cache.storeDirectory("scan-cli", "1.0", "exploded", true, dir -> write(dir, "second"));
+        assertNotEquals(first, second);
+        assertEquals(second, cache.findDirectory("scan-cli", "1.0", "exploded"));
+        // a concurrent build linked to the first one still sees it complete
+        assertEquals("first", new String(Files.readAllBytes(first.resolve("content.txt")), UTF_8));
+        assertTrue(Files.exists(first.resolve(".complete")));
+        assertEquals("second", new String(Files.readAllBytes(second.resolve("content.txt")), UTF_8));
+    }
+
+    private static void write(final Path directory, final String content) throws IOException {
+        Files.createDirectories(directory);
+        Files.write(directory.resolve("content.txt"), content.getBytes(UTF_8));
+    }
+}
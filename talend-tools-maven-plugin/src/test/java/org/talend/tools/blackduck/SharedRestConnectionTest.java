@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import com.blackducksoftware.integration.hub.proxy.ProxyInfo;
+import com.blackducksoftware.integration.log.Slf4jIntLogger;
+
+import okhttp3.Response;
+
+public class SharedRestConnectionTest {
+
+    @Test
+    public void concurrentRequestsRenewAnExpiredSession() throws Exception {
+        try (final StubHub hub = new StubHub()) {
+            hub.on("GET", "/api/projects", 200, "{}", null);
+            final SharedRestConnection connection =
+                    new SharedRestConnection(new Slf4jIntLogger(LoggerFactory.getLogger("client")),
+                            new URL(hub.url("")), "user", "password", 10, ProxyInfo.NO_PROXY_INFO);
+            connection.connect();
+            assertEquals(1, hub.getLogins());
+            hub.expireSession();
+
+            final ExecutorService pool = Executors.newFixedThreadPool(8);
+            try {
+                final List<Future<Integer>> calls = new ArrayList<>();
+                for (int i = 0; i < 64; i++) {
+                    calls.add(pool.submit(() -> {
+                        try (final Response response = connection.handleExecuteClientCall(
+                                connection.createGetRequest(connection.createHttpUrl(hub.url("/api/projects"))))) {
+                            return response.code();
+                        }
+                    }));
+                }
+                for (final Future<Integer> call : calls) {
+                    assertEquals(200, call.get().intValue());
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+            // the requests rejected together share the renewed session
+            assertTrue(String.valueOf(hub.getLogins()), hub.getLogins() >= 2 && hub.getLogins() <= 9);
+        }
+    }
+}
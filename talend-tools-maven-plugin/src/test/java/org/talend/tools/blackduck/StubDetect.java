@@ -0,0 +1,42 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+/**
+ * Stands for hub-detect in the worker tests: prints its arguments and how many times it ran in this class loader then
+ * exits with the first argument as status, from another thread if the second argument is {@code thread} or fails
+ * without exiting if it is {@code fail}.
+ */
+public class StubDetect {
+
+    private static int runs;
+
+    public static void main(final String[] args) throws InterruptedException {
+        System.out.println("stub args=" + String.join(",", args));
+        System.err.println("stub run=" + ++runs);
+        final int status = Integer.parseInt(args[0]);
+        if ("fail".equals(args[1])) {
+            throw new IllegalStateException("stub failure");
+        }
+        if ("thread".equals(args[1])) {
+            final Thread exit = new Thread(() -> System.exit(status));
+            exit.start();
+            exit.join();
+            return;
+        }
+        System.exit(status);
+    }
+}
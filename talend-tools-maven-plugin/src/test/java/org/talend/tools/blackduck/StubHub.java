@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2017 Talend Inc. - www.talend.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.talend.tools.blackduck;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.LoggerFactory;
+
+import com.blackducksoftware.integration.hub.proxy.ProxyInfo;
+import com.blackducksoftware.integration.hub.rest.CredentialsRestConnection;
+import com.blackducksoftware.integration.log.Slf4jIntLogger;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local stub of the hub REST API: responses are registered per method and path and the requests are recorded.
+ */
+class StubHub implements AutoCloseable {
+
+    private final HttpServer server;
+
+    private final Map<String, Response> responses = new ConcurrentHashMap<>();
+
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger logins = new AtomicInteger();
+
+    private final AtomicInteger session = new AtomicInteger();
+
+    private volatile boolean checkSession;
+
+    StubHub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        on("POST", "/j_spring_security_check", 204, null, null);
+    }
+
+    String url(final String path) {
+        return "http://localhost:" + server.getAddress().getPort() + path;
+    }
+
+    /**
+     * @param location optional, the location header of the response.
+     */
+    StubHub on(final String method, final String path, final int status, final String body, final String location) {
+        responses.put(method + ' ' + path, new Response(status, body, location));
+        return this;
+    }
+
+    /**
+     * @return the requests (method and path) received without the authentication.
+     */
+    List<String> getRequests() {
+        return requests;
+    }
+
+    int getLogins() {
+        return logins.get();
+    }
+
+    /**
+     * Invalidates the current session, the requests then fail with a 401 until the next login.
+     */
+    StubHub expireSession() {
+        checkSession = true;
+        session.incrementAndGet();
+        return this;
+    }
+
+    CredentialsRestConnection connect() throws Exception {
+        final CredentialsRestConnection connection =
+                new CredentialsRestConnection(new Slf4jIntLogger(LoggerFactory.getLogger("client")), new URL(url("")),
+                        "user", "password", 10, ProxyInfo.NO_PROXY_INFO);
+        connection.connect();
+        return connection;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        final String request = exchange.getRequestMethod() + ' ' + exchange.getRequestURI().getPath();
+        try (final InputStream body = exchange.getRequestBody()) {
+            while (body.read() >= 0) {
+                // drain
+            }
+        }
+        final String cookie = "SESSION=" + session.get();
+        if (request.endsWith("/j_spring_security_check")) {
+            logins.incrementAndGet();
+            exchange.getResponseHeaders().add("Set-Cookie", cookie + "; Path=/");
+        } else {
+            requests.add(request);
+            final String cookies = exchange.getRequestHeaders().getFirst("Cookie");
+            if (checkSession && (cookies == null || !cookies.contains(cookie))) {
+                exchange.sendResponseHeaders(401, -1);
+                exchange.close();
+                return;
+            }
+        }
+        final Response response = responses.get(request);
+        if (response == null) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        if (response.location != null) {
+            exchange.getResponseHeaders().add("Location", url(response.location));
+        }
+        final byte[] content =
+                response.body == null ? new byte[0] : response.body.replace("${hub}", url("")).getBytes(UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(response.status, content.length == 0 ? -1 : content.length);
+        try (final OutputStream out = exchange.getResponseBody()) {
+            out.write(content);
+        }
+    }
+
+    private static class Response {
+
+        private final int status;
+
+        private final String body;
+
+        private final String location;
+
+        private Response(final int status, final String body, final String location) {
+            this.status = status;
+            this.body = body;
+            this.location = location;
+        }
+    }
+}